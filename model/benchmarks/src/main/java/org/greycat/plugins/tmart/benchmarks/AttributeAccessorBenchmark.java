@@ -0,0 +1,96 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boxed attribute accessors with their primitive overloads. The node state only holds objects, so both
+ * box on write and read a boxed value: the primitive overloads save the call-site boxing, casts and null checks, not
+ * the allocation at the storage boundary. The pairs measure what that difference is worth.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AttributeAccessorBenchmark {
+
+    private BenchModel model;
+
+    private Sensor sensor;
+
+    private long counter;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        sensor = model.newSensor(BenchModel.REAL_WORLD, 0);
+        sensor.setValue(0.0);
+        sensor.setCounter(0L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sensor.free();
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public Sensor setDoubleBoxed() {
+        return sensor.setValue(Double.valueOf(counter++));
+    }
+
+    @Benchmark
+    public Sensor setDoublePrimitive() {
+        return sensor.setValue((double) counter++);
+    }
+
+    @Benchmark
+    public Double getDoubleBoxed() {
+        return sensor.getValue();
+    }
+
+    @Benchmark
+    public double getDoublePrimitive() {
+        return sensor.getValueAsDouble();
+    }
+
+    @Benchmark
+    public Sensor setLongBoxed() {
+        return sensor.setCounter(Long.valueOf(counter++));
+    }
+
+    @Benchmark
+    public Sensor setLongPrimitive() {
+        return sensor.setCounter(counter++);
+    }
+
+    @Benchmark
+    public Long getLongBoxed() {
+        return sensor.getCounter();
+    }
+
+    @Benchmark
+    public long getLongPrimitive() {
+        return sensor.getCounterAsLong();
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import greycat.DeferCounterSync;
+import greycat.GraphBuilder;
+import greycat.Node;
+import greycat.Task;
+import greycat.TaskResult;
+
+final class BenchmarkHelper {
+
+    private BenchmarkHelper() {
+    }
+
+    static BenchModel connect() {
+        BenchModel model = new BenchModel(new GraphBuilder());
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.connect(waiter.wrap());
+        waiter.waitResult();
+        return model;
+    }
+
+    static void disconnect(BenchModel model) {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.disconnect(waiter.wrap());
+        waiter.waitResult();
+    }
+
+    /**
+     * Runs the task synchronously and returns the size of its result, which is freed.
+     */
+    static int execute(BenchModel model, Task task, Object initial) {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        task.executeWith(model.graph(), initial, waiter.wrap());
+        TaskResult result = (TaskResult) waiter.waitResult();
+        int size = result.size();
+        result.free();
+        return size;
+    }
+
+    /**
+     * Resolves a node synchronously.
+     */
+    static <A extends Node> A lookup(BenchModel model, long time, long id) {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.graph().lookup(BenchModel.REAL_WORLD, time, id, waiter.wrap());
+        return (A) waiter.waitResult();
+    }
+
+    /**
+     * Updates the indexes a sensor is dirty for synchronously.
+     */
+    static void index(Sensor sensor) {
+        DeferCounterSync waiter = sensor.graph().newSyncCounter(1);
+        sensor.indexSensor(waiter.wrap());
+        waiter.waitResult();
+    }
+
+    /**
+     * Frees the nodes resolved by a benchmark and returns how many there were.
+     */
+    static int free(Node[] nodes) {
+        for (Node node : nodes) {
+            node.free();
+        }
+        return nodes.length;
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import org.greycat.plugins.tmart.model.ast.MetaModelParser;
+import org.greycat.plugins.tmart.model.ast.Model;
+import org.greycat.plugins.tmart.model.ast.ModelBuilder;
+import org.greycat.plugins.tmart.model.ast.impl.ModelImpl;
+import org.greycat.plugins.tmart.model.generator.Generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Measures how the parsing and the generation scale with the size of the metamodel.
+ * Synthetic metamodels with inheritance, relations, enums and indexes are generated phase by phase, recording the
+ * time taken by each phase. The run fails when the cost per class of a phase, on the largest metamodel, grows more
+ * than tmart.scalability.maxGrowth times its cost on the reference one.
+ * <p>
+ * This is a standalone command line tool, not a JMH benchmark: it prints its report on the standard output, the
+ * phases exceeding the growth limit on the standard error, and exits with 1 when there is any.
+ * <p>
+ * java -cp benchmarks.jar org.greycat.plugins.tmart.benchmarks.GeneratorScalability [sizes...]
+ */
+public class GeneratorScalability {
+
+    private static final String[] PHASES = {"lex/parse", "ast build", "emission", "file write"};
+
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10, 100, 1000, 10000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        int reference = Integer.getInteger("tmart.scalability.reference", 1000);
+        double maxGrowth = Double.parseDouble(System.getProperty("tmart.scalability.maxGrowth", "3.0"));
+
+        //warm up the parser and the generator on the smallest metamodel
+        for (int i = 0; i < RUNS; i++) {
+            measure(sizes[0]);
+        }
+
+        System.out.println(String.format("%8s  %-10s  %12s  %12s", "classes", "phase", "time (ms)", "ns/class"));
+        long[][] times = new long[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            long[] best = null;
+            for (int run = 0; run < RUNS; run++) {
+                long[] current = measure(sizes[i]);
+                if (best == null || total(current) < total(best)) {
+                    best = current;
+                }
+            }
+            times[i] = best;
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                System.out.println(String.format("%8d  %-10s  %12.2f  %12d", sizes[i], PHASES[phase],
+                        best[phase] / 1e6, best[phase] / sizes[i]));
+            }
+        }
+
+        int referenceIndex = -1;
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] == reference) {
+                referenceIndex = i;
+            }
+        }
+        int largest = sizes.length - 1;
+        if (referenceIndex == -1 || referenceIndex == largest) {
+            return;
+        }
+        boolean failed = false;
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            double referenceCost = (double) times[referenceIndex][phase] / sizes[referenceIndex];
+            double largestCost = (double) times[largest][phase] / sizes[largest];
+            double growth = largestCost / referenceCost;
+            if (growth > maxGrowth) {
+                System.err.println(String.format("%s: cost per class grows %.1f times from %d to %d classes (max %.1f)",
+                        PHASES[phase], growth, sizes[referenceIndex], sizes[largest], maxGrowth));
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs all the phases once, returns the nanoseconds taken by each one.
+     */
+    private static long[] measure(int size) throws IOException {
+        String content = synthesize(size);
+        long[] times = new long[PHASES.length];
+        File target = Files.createTempDirectory("tmart-scalability").toFile();
+        try {
+            long start = System.nanoTime();
+            MetaModelParser.MetamodelContext tree = ModelBuilder.syntax(content);
+            record(0, start, times);
+
+            start = System.nanoTime();
+            Model model = ModelBuilder.build(tree, new ModelImpl());
+            record(1, start, times);
+
+            Generator generator = new Generator(model);
+            start = System.nanoTime();
+            generator.emit("synth.Synth", null);
+            record(2, start, times);
+
+            start = System.nanoTime();
+            generator.write(target, null);
+            record(3, start, times);
+        } finally {
+            delete(target);
+        }
+        return times;
+    }
+
+    /**
+     * A metamodel of the given number of classes, in chains of ten subclasses, each class having attributes of all
+     * the primitive types and a relation to a class of another chain. Every tenth class is indexed, and there is an
+     * enum every ten classes.
+     */
+    static String synthesize(int size) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i += 10) {
+            builder.append("enum synth.e").append(i / 1000).append(".E").append(i).append(" {\n")
+                    .append("    A, B, C, D\n")
+                    .append("}\n");
+        }
+        for (int i = 0; i < size; i++) {
+            builder.append("class ").append(className(i));
+            if (i % 10 != 0) {
+                builder.append(" extends ").append(className(i - 1));
+            }
+            builder.append(" {\n")
+                    .append("    att s").append(i).append(" : String\n")
+                    .append("    att d").append(i).append(" : Double\n")
+                    .append("    att l").append(i).append(" : Long\n")
+                    .append("    att n").append(i).append(" : Integer\n")
+                    .append("    att b").append(i).append(" : Boolean\n")
+                    .append("    rel r").append(i).append(" : ").append(className((int) ((i * 7L + 10) % size))).append("\n")
+                    .append("}\n");
+            if (i % 10 == 0) {
+                builder.append("index idx").append(i).append(" : ").append(className(i)).append(" {\n")
+                        .append("    s").append(i).append(", l").append(i).append("\n")
+                        .append("}\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String className(int i) {
+        return "synth.p" + (i / 1000) + ".C" + i;
+    }
+
+    private static void record(int phase, long start, long[] times) {
+        times[phase] = System.nanoTime() - start;
+    }
+
+    private static long total(long[] values) {
+        long result = 0;
+        for (long value : values) {
+            result += value;
+        }
+        return result;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import greycat.DeferCounterSync;
+import org.greycat.plugins.tmart.benchmarks.time.AggFn;
+import org.greycat.plugins.tmart.benchmarks.time.DoubleSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the history of an attribute, with one lookup per timestamp and with the generated history accessor, and
+ * downsamples it with the generated aggregation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HistoryBenchmark {
+
+    @Param({"1000"})
+    private int points;
+
+    private BenchModel model;
+
+    private long sensor;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        Sensor created = model.newSensor(BenchModel.REAL_WORLD, 0);
+        sensor = created.id();
+        created.free();
+        for (int i = 0; i < points; i++) {
+            Sensor node = BenchmarkHelper.lookup(model, i, sensor);
+            node.setValue((double) i);
+            node.free();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public double lookupPerTimestamp() {
+        double sum = 0;
+        for (int i = 0; i < points; i++) {
+            Sensor node = BenchmarkHelper.lookup(model, i, sensor);
+            sum += node.getValueAsDouble();
+            node.free();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double history() {
+        Sensor node = BenchmarkHelper.lookup(model, points, sensor);
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        node.getValueHistory(0, points, waiter.wrap());
+        node.free();
+        double sum = 0;
+        for (double value : ((DoubleSeries) waiter.waitResult()).values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public DoubleSeries aggregate() {
+        Sensor node = BenchmarkHelper.lookup(model, points, sensor);
+        DoubleSeries result = node.aggregateValue(0, points, 10, AggFn.AVG);
+        node.free();
+        return result;
+    }
+
+}
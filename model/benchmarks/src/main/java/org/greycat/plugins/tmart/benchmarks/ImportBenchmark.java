@@ -0,0 +1,136 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import bench.SensorRow;
+import greycat.DeferCounterSync;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a batch of indexed sensors into a fresh graph, node by node through the setters and the per-node index
+ * flush, and through the generated chunked import.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"1000"})
+    private int chunkSize;
+
+    private BenchModel model;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        model = BenchmarkHelper.connect();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public long perNode() {
+        for (int i = 0; i < size; i++) {
+            Sensor sensor = model.newSensor(BenchModel.REAL_WORLD, 0);
+            sensor.setName("sensor_" + i);
+            sensor.setValue((double) i);
+            sensor.setCounter((long) i);
+            sensor.setLevel(i % 10);
+            sensor.setActive(true);
+            BenchmarkHelper.index(sensor);
+            sensor.free();
+        }
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.save(waiter.wrap());
+        waiter.waitResult();
+        return size;
+    }
+
+    @Benchmark
+    public long imported() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.importSensor(BenchModel.REAL_WORLD, 0, new Rows(size), chunkSize, waiter.wrap());
+        return (Long) waiter.waitResult();
+    }
+
+    /**
+     * Generates the same rows as the per-node path.
+     */
+    private static final class Rows implements Iterator<SensorRow> {
+
+        private final int size;
+
+        private int next;
+
+        Rows(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public SensorRow next() {
+            final int i = next++;
+            return new SensorRow() {
+                @Override
+                public String getName() {
+                    return "sensor_" + i;
+                }
+
+                @Override
+                public Double getValue() {
+                    return (double) i;
+                }
+
+                @Override
+                public Long getCounter() {
+                    return (long) i;
+                }
+
+                @Override
+                public Integer getLevel() {
+                    return i % 10;
+                }
+
+                @Override
+                public Boolean getActive() {
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import greycat.DeferCounterSync;
+import greycat.NodeIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-indexes a modified node and queries the generated indexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private BenchModel model;
+
+    private Sensor touched;
+
+    private NodeIndex sensors;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        for (int i = 0; i < size; i++) {
+            Sensor sensor = model.newSensor(BenchModel.REAL_WORLD, 0);
+            sensor.setName("sensor_" + i);
+            sensor.setCounter((long) i);
+            if (i == 0) {
+                touched = sensor;
+            } else {
+                BenchmarkHelper.index(sensor);
+                sensor.free();
+            }
+        }
+        BenchmarkHelper.index(touched);
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.graph().indexIfExists(BenchModel.REAL_WORLD, 0, BenchModel.IDX_SENSORS, waiter.wrap());
+        sensors = (NodeIndex) waiter.waitResult();
+    }
+
+    @TearDown
+    public void tearDown() {
+        touched.free();
+        sensors.free();
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public Sensor reindex() {
+        touched.setName("sensor_0");
+        BenchmarkHelper.index(touched);
+        return touched;
+    }
+
+    @Benchmark
+    public int find() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.findSensors(BenchModel.REAL_WORLD, 0, "name=sensor_" + (counter++ % size), waiter.wrap());
+        return BenchmarkHelper.free((Sensor[]) waiter.waitResult());
+    }
+
+    @Benchmark
+    public int findTyped() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.findSensorsByName(BenchModel.REAL_WORLD, 0, "sensor_" + (counter++ % size), waiter.wrap());
+        return BenchmarkHelper.free(((BenchNodes<Sensor>) waiter.waitResult()).nodes());
+    }
+
+    @Benchmark
+    public int findTypedResolved() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.findSensorsByName(sensors, "sensor_" + (counter++ % size), waiter.wrap());
+        return BenchmarkHelper.free(((BenchNodes<Sensor>) waiter.waitResult()).nodes());
+    }
+
+    @Benchmark
+    public int findRange() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        long lo = counter++ % size;
+        model.findByCounterRange(BenchModel.REAL_WORLD, 0, lo, lo + 10, waiter.wrap());
+        return BenchmarkHelper.free((Sensor[]) waiter.waitResult());
+    }
+
+    @Benchmark
+    public int findAll() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        model.findAllSensors(BenchModel.REAL_WORLD, 0, waiter.wrap());
+        return BenchmarkHelper.free((Sensor[]) waiter.waitResult());
+    }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Probe;
+import bench.Status;
+import greycat.Node;
+
+/**
+ * Derivation of the healthy attribute of the probes, from their status.
+ */
+public class ProbeHealth implements BenchDerivedFunction<Boolean> {
+
+    @Override
+    public Boolean compute(Node node) {
+        final Status status = ((Probe) node).getStatus();
+        return status != null && status != Status.FAILED;
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Gateway;
+import bench.Reading;
+import bench.Sensor;
+import greycat.DeferCounterSync;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds to and resolves a generated relation, and looks up a target of an indexed relation by key.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RelationBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private BenchModel model;
+
+    private Sensor sensor;
+
+    private Reading reading;
+
+    private Sensor growing;
+
+    private Gateway gateway;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        sensor = model.newSensor(BenchModel.REAL_WORLD, 0);
+        for (int i = 0; i < size; i++) {
+            Reading created = model.newReading(BenchModel.REAL_WORLD, 0);
+            created.setValue((double) i);
+            created.setSensor(sensor);
+            sensor.addToReadings(created);
+            created.free();
+        }
+        reading = model.newReading(BenchModel.REAL_WORLD, 0);
+        reading.setSensor(sensor);
+        gateway = model.newGateway(BenchModel.REAL_WORLD, 0);
+        for (int i = 0; i < size; i++) {
+            Sensor target = model.newSensor(BenchModel.REAL_WORLD, 0);
+            target.setName("sensor_" + i);
+            gateway.addToSensors(target);
+            target.free();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        growing = model.newSensor(BenchModel.REAL_WORLD, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        growing.free();
+    }
+
+    @TearDown
+    public void tearDown() {
+        reading.free();
+        sensor.free();
+        gateway.free();
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public Sensor addToRelation() {
+        return growing.addToReadings(reading);
+    }
+
+    @Benchmark
+    public int getRelation() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        sensor.getReadings(waiter.wrap());
+        return BenchmarkHelper.free((Reading[]) waiter.waitResult());
+    }
+
+    @Benchmark
+    public int getRelationIds() {
+        return sensor.getReadingsIds().length;
+    }
+
+    @Benchmark
+    public int getRelationPage() {
+        DeferCounterSync waiter = model.graph().newSyncCounter(1);
+        sensor.getReadingsPage(0, 10, waiter.wrap());
+        return BenchmarkHelper.free((Reading[]) waiter.waitResult());
+    }
+
+    @Benchmark
+    public long getSingle() {
+        Sensor owner = reading.getSensor();
+        long id = owner.id();
+        owner.free();
+        return id;
+    }
+
+    @Benchmark
+    public long getByKey() {
+        Sensor found = gateway.getSensorsBy("sensor_" + (counter++ % size));
+        long id = found.id();
+        found.free();
+        return id;
+    }
+
+}
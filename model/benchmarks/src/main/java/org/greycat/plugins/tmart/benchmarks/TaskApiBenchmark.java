@@ -0,0 +1,95 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import greycat.Task;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static greycat.Tasks.newTask;
+import static org.greycat.plugins.tmart.benchmarks.task.BenchTaskAPI.*;
+
+/**
+ * Runs typical pipelines built with the generated task API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TaskApiBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private BenchModel model;
+
+    private Task createAndIndex;
+
+    private Task readAll;
+
+    private Task readAllPlanned;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        for (int i = 0; i < size; i++) {
+            Sensor sensor = model.newSensor(BenchModel.REAL_WORLD, 0);
+            sensor.setName("sensor_" + i);
+            sensor.setValue((double) i);
+            BenchmarkHelper.index(sensor);
+            sensor.free();
+        }
+        createAndIndex = newTask()
+                .then(travelInRealWorld())
+                .then(createSensorNode())
+                .then(setSensorName("created"))
+                .then(setSensorValue("1.0"))
+                .then(indexSensor());
+        readAll = newTask()
+                .then(travelInRealWorld())
+                .then(findAllSensors())
+                .then(getSensorValue());
+        readAllPlanned = newTask()
+                .then(travelInRealWorld())
+                .then(findAllSensors())
+                .then(getPlannedVersionNode());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public int createAndIndex() {
+        return BenchmarkHelper.execute(model, createAndIndex, null);
+    }
+
+    @Benchmark
+    public int readAll() {
+        return BenchmarkHelper.execute(model, readAll, null);
+    }
+
+    @Benchmark
+    public int readAllInPlannedWorld() {
+        return BenchmarkHelper.execute(model, readAllPlanned, null);
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.Sensor;
+import greycat.Task;
+import org.greycat.plugins.tmart.benchmarks.task.BenchTaskAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static greycat.Tasks.newTask;
+
+/**
+ * Switches a large task result between the real and the planned world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WorldSwitchBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private BenchModel model;
+
+    private Sensor[] sensors;
+
+    private Task toPlanned;
+
+    private Task toReal;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        sensors = new Sensor[size];
+        for (int i = 0; i < size; i++) {
+            sensors[i] = model.newSensor(BenchModel.REAL_WORLD, 0);
+            sensors[i].setValue((double) i);
+        }
+        toPlanned = newTask().then(BenchTaskAPI.getPlannedVersionNode());
+        toReal = newTask().then(BenchTaskAPI.getRealVersionNode());
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Sensor sensor : sensors) {
+            sensor.free();
+        }
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public int switchToPlannedWorld() {
+        return BenchmarkHelper.execute(model, toPlanned, sensors);
+    }
+
+    @Benchmark
+    public int switchToRealWorld() {
+        return BenchmarkHelper.execute(model, toReal, sensors);
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import bench.MonitoredSensor;
+import bench.Reading;
+import bench.Sensor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a frequently monitored value at successive times, on a node where it is stored with the structural
+ * attributes and relations, and on one where it is annotated monitorSeparation. Run with -prof gc to compare the
+ * bytes copied per write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class WriteAmplificationBenchmark {
+
+    @Param({"100"})
+    private int readings;
+
+    private BenchModel model;
+
+    private long sensor;
+
+    private long monitored;
+
+    private long time;
+
+    @Setup
+    public void setup() {
+        model = BenchmarkHelper.connect();
+        Sensor plain = model.newSensor(BenchModel.REAL_WORLD, 0);
+        plain.setName("plain").setCounter(0L).setLevel(0).setActive(true);
+        MonitoredSensor separated = model.newMonitoredSensor(BenchModel.REAL_WORLD, 0);
+        separated.setName("separated").setCounter(0L).setLevel(0).setActive(true);
+        for (int i = 0; i < readings; i++) {
+            Reading reading = model.newReading(BenchModel.REAL_WORLD, 0);
+            plain.addToReadings(reading);
+            separated.addToReadings(reading);
+            reading.free();
+        }
+        sensor = plain.id();
+        monitored = separated.id();
+        plain.free();
+        separated.free();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkHelper.disconnect(model);
+    }
+
+    @Benchmark
+    public Sensor writeWithStructure() {
+        Sensor node = BenchmarkHelper.lookup(model, ++time, sensor);
+        node.setValue((double) time);
+        node.free();
+        return node;
+    }
+
+    @Benchmark
+    public MonitoredSensor writeSeparated() {
+        MonitoredSensor node = BenchmarkHelper.lookup(model, ++time, monitored);
+        node.setValue((double) time);
+        node.free();
+        return node;
+    }
+
+}
@@ -0,0 +1,51 @@
+// Reference metamodel used by the benchmarks
+
+class bench.Sensor {
+    att name : String
+    att value : Double
+    att counter : Long
+    att level : Integer
+    att active : Boolean
+    rel readings : bench.Reading
+}
+
+class bench.Reading {
+    att value : Double
+    rel sensor : bench.Sensor [0..1]
+}
+
+index sensors : bench.Sensor {
+    name
+}
+
+// Same shape as Sensor, but its value is written apart from the structural attributes
+class bench.MonitoredSensor {
+    att name : String
+    att value : Double { monitorSeparation }
+    att counter : Long
+    att level : Integer
+    att active : Boolean
+    rel readings : bench.Reading
+}
+
+index byCounter : bench.Sensor ordered {
+    counter
+}
+
+class bench.Gateway {
+    att name : String
+    rel sensors : bench.Sensor indexed by name
+}
+
+enum bench.Status {
+    IDLE, RUNNING, FAILED
+}
+
+class bench.Probe {
+    att name : String
+    att status : bench.Status
+    att phases : DoubleArray
+    att counters : LongToLongMap
+    att load : timeseries(Double, period=1s)
+    att healthy : Boolean using "org.greycat.plugins.tmart.benchmarks.ProbeHealth" from "status" { derived }
+}
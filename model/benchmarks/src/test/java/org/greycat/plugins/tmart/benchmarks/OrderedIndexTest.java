@@ -0,0 +1,108 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import greycat.DeferCounterSync;
+import greycat.Graph;
+import greycat.GraphBuilder;
+import greycat.Node;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OrderedIndexTest {
+
+    private Graph graph;
+
+    private Node index;
+
+    @Before
+    public void setup() {
+        graph = new GraphBuilder().build();
+        DeferCounterSync waiter = graph.newSyncCounter(1);
+        graph.connect(waiter.wrap());
+        waiter.waitResult();
+        index = graph.newNode(0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        index.free();
+        DeferCounterSync waiter = graph.newSyncCounter(1);
+        graph.disconnect(waiter.wrap());
+        waiter.waitResult();
+    }
+
+    @Test
+    public void boundsAreInclusive() {
+        for (long key = 1; key <= 10; key++) {
+            BenchOrderedIndex.update(index, 100 + key, key);
+        }
+        Assert.assertArrayEquals(new long[]{103, 104, 105}, BenchOrderedIndex.range(index, 3, 5));
+        Assert.assertArrayEquals(new long[]{105}, BenchOrderedIndex.range(index, 5, 5));
+        Assert.assertArrayEquals(new long[]{101}, BenchOrderedIndex.range(index, Long.MIN_VALUE, 1));
+        Assert.assertArrayEquals(new long[]{110}, BenchOrderedIndex.range(index, 10, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyRanges() {
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, Long.MIN_VALUE, Long.MAX_VALUE));
+        for (long key = 1; key <= 10; key++) {
+            BenchOrderedIndex.update(index, 100 + key, key * 10);
+        }
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, 6, 5));
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, 11, 19));
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, Long.MIN_VALUE, 9));
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, 101, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void extremeAndDuplicateKeys() {
+        BenchOrderedIndex.update(index, 1, Long.MAX_VALUE);
+        BenchOrderedIndex.update(index, 2, Long.MIN_VALUE);
+        BenchOrderedIndex.update(index, 3, 0L);
+        BenchOrderedIndex.update(index, 4, 0L);
+        Assert.assertArrayEquals(new long[]{2, 3, 4, 1}, BenchOrderedIndex.range(index, Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertArrayEquals(new long[]{3, 4}, BenchOrderedIndex.range(index, 0, 0));
+    }
+
+    @Test
+    public void updatesMoveAndRemoveEntries() {
+        BenchOrderedIndex.update(index, 1, 5L);
+        BenchOrderedIndex.update(index, 2, 6L);
+        BenchOrderedIndex.update(index, 1, 7L);
+        Assert.assertArrayEquals(new long[0], BenchOrderedIndex.range(index, 5, 5));
+        Assert.assertArrayEquals(new long[]{2, 1}, BenchOrderedIndex.range(index, 5, 7));
+        BenchOrderedIndex.update(index, 2, null);
+        Assert.assertArrayEquals(new long[]{1}, BenchOrderedIndex.range(index, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void doubleKeysKeepTheirOrder() {
+        double[] keys = {Double.NEGATIVE_INFINITY, -1.5, -0.5, 0.0, 0.5, 1.5, Double.POSITIVE_INFINITY};
+        for (int i = keys.length - 1; i >= 0; i--) {
+            BenchOrderedIndex.update(index, i, keys[i]);
+        }
+        Assert.assertArrayEquals(new long[]{0, 1, 2, 3, 4, 5, 6},
+                BenchOrderedIndex.range(index, Long.MIN_VALUE, Long.MAX_VALUE));
+        Assert.assertArrayEquals(new long[]{2, 3, 4},
+                BenchOrderedIndex.range(index, BenchOrderedIndex.encode(-0.5), BenchOrderedIndex.encode(0.5)));
+        Assert.assertArrayEquals(new long[]{1, 2, 3, 4, 5},
+                BenchOrderedIndex.range(index, BenchOrderedIndex.encode(-1.5), BenchOrderedIndex.encode(1.5)));
+    }
+
+}
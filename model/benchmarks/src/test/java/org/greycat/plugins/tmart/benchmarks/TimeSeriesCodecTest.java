@@ -0,0 +1,135 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.benchmarks;
+
+import greycat.DeferCounterSync;
+import greycat.Graph;
+import greycat.GraphBuilder;
+import greycat.Node;
+import org.greycat.plugins.tmart.benchmarks.time.DoubleSeries;
+import org.greycat.plugins.tmart.benchmarks.time.TimeSeriesCodec;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TimeSeriesCodecTest {
+
+    private static final long PERIOD = 1000;
+
+    private static final double[] SPECIAL = {
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, 0.0, Double.MIN_VALUE,
+            Double.MAX_VALUE, -Double.MAX_VALUE, 1.0, 1.0, Double.NaN, 42.5, Double.NaN
+    };
+
+    private Graph graph;
+
+    private Node node;
+
+    @Before
+    public void setup() {
+        graph = new GraphBuilder().build();
+        DeferCounterSync waiter = graph.newSyncCounter(1);
+        graph.connect(waiter.wrap());
+        waiter.waitResult();
+        node = graph.newNode(0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        node.free();
+        DeferCounterSync waiter = graph.newSyncCounter(1);
+        graph.disconnect(waiter.wrap());
+        waiter.waitResult();
+    }
+
+    /**
+     * Appends the samples, reads them all back, and compares the values bit for bit.
+     */
+    private void roundTrip(TimeSeriesCodec codec, long[] times, double[] values) {
+        for (int i = 0; i < times.length; i++) {
+            codec.append(node, times[i], values[i]);
+        }
+        DoubleSeries series = codec.range(node, Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertArrayEquals(times, series.times());
+        Assert.assertEquals(values.length, series.values().length);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals("sample " + i, Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(series.values()[i]));
+        }
+    }
+
+    /**
+     * Times whose delta-of-delta covers every size the encoding has a case for, negative ones included.
+     */
+    private static long[] gappedTimes(int size) {
+        long[] gaps = {PERIOD, PERIOD, PERIOD + 50, PERIOD - 10, PERIOD + 200, PERIOD - 200, PERIOD + 2000, 1, 1L << 40, PERIOD, 3};
+        long[] times = new long[size];
+        for (int i = 1; i < size; i++) {
+            times[i] = times[i - 1] + gaps[i % gaps.length];
+        }
+        return times;
+    }
+
+    @Test
+    public void specialValuesGorilla() {
+        roundTrip(new TimeSeriesCodec("special", true, PERIOD), gappedTimes(SPECIAL.length), SPECIAL);
+    }
+
+    @Test
+    public void specialValuesRaw() {
+        roundTrip(new TimeSeriesCodec("special", false, PERIOD), gappedTimes(SPECIAL.length), SPECIAL);
+    }
+
+    @Test
+    public void severalBlocks() {
+        Random random = new Random(7);
+        double[] values = new double[3000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 10 == 0 ? SPECIAL[random.nextInt(SPECIAL.length)] : Math.round(random.nextGaussian() * 100) / 10.0;
+        }
+        roundTrip(new TimeSeriesCodec("blocks", true, PERIOD), gappedTimes(values.length), values);
+    }
+
+    @Test
+    public void rangeBoundsAreInclusive() {
+        TimeSeriesCodec codec = new TimeSeriesCodec("bounds", true, PERIOD);
+        long[] times = gappedTimes(2500);
+        for (int i = 0; i < times.length; i++) {
+            codec.append(node, times[i], i);
+        }
+        //across the boundary of the first two blocks
+        int from = 1000;
+        int to = 1100;
+        DoubleSeries series = codec.range(node, times[from], times[to]);
+        Assert.assertArrayEquals(Arrays.copyOfRange(times, from, to + 1), series.times());
+        Assert.assertEquals(from, series.values()[0], 0);
+        Assert.assertEquals(to, series.values()[series.values().length - 1], 0);
+        //between two samples
+        Assert.assertEquals(0, codec.range(node, times[5] + 1, times[6] - 1).times().length);
+        Assert.assertEquals(0, codec.range(node, times[times.length - 1] + 1, Long.MAX_VALUE).times().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unorderedAppendRejected() {
+        TimeSeriesCodec codec = new TimeSeriesCodec("unordered", true, PERIOD);
+        codec.append(node, 10, 1.0);
+        codec.append(node, 10, 2.0);
+    }
+
+}
@@ -28,7 +28,8 @@ SL_COMMENT :  '//' ~('\r' | '\n')* ;
 
 metamodel: (enumDeclr | classDeclr | indexDeclr)*;
 
-indexDeclr : 'index' IDENT ':' (TYPE_NAME|IDENT) '{' indexLiterals '}';
+indexDeclr : 'index' IDENT ':' (TYPE_NAME|IDENT) indexKind? '{' indexLiterals '}';
+indexKind : 'ordered'; // single numeric key, for small or rarely written sets: updates are linear in the size of the index
 indexLiterals : IDENT (',' IDENT)*;
 
 enumDeclr : 'enum' (TYPE_NAME|IDENT) '{' enumLiterals '}';
@@ -36,15 +37,21 @@ enumLiterals : IDENT (',' IDENT)*;
 classDeclr : 'class' (TYPE_NAME|IDENT) parentsDeclr? '{' (attributeDeclaration | relationDeclaration)* '}';
 parentsDeclr : 'extends' (TYPE_NAME|IDENT);
 
-//semanticDeclr : '{' (semanticUsing | semanticFrom | semanticWith )* '}' ;
-//semanticWith : 'with' IDENT (STRING|NUMBER);
-//semanticUsing : 'using' STRING;
-//semanticFrom : 'from' STRING;
+semanticDeclr : (semanticUsing | semanticFrom | semanticWith)+ ;
+semanticWith : 'with' IDENT (STRING|NUMBER);
+semanticUsing : 'using' STRING;
+semanticFrom : 'from' STRING;
 
 //annotation : ('learned' | 'derived' | 'global');
-annotation: ('continuous' | 'monitorSeparation'); // put as with
-
-attributeType : 'String' | 'Double' | 'Long' | 'Integer' | 'Boolean' | TYPE_NAME;
-attributeDeclaration : /*annotation**/ 'att' IDENT ':' attributeType /*semanticDeclr?*/ ('{' (annotation (',' annotation)*)? '}')?;
-
-relationDeclaration : /*annotation**/ 'rel' IDENT ':' (TYPE_NAME|IDENT) /*semanticDeclr?*/ ;
+annotation: ('continuous' annotationParameters? | 'monitorSeparation' | 'derived'); // put as with
+annotationParameters : '(' annotationParameter (',' annotationParameter)* ')';
+annotationParameter : IDENT '=' NUMBER;
+
+attributeType : 'String' | 'Double' | 'Long' | 'Integer' | 'Boolean' | 'DoubleArray' | 'LongArray' | 'IntArray' | 'LongToLongMap' | timeseriesType | TYPE_NAME | IDENT;
+timeseriesType : 'timeseries' '(' 'Double' (',' timeseriesParameter)* ')';
+timeseriesParameter : IDENT '=' (NUMBER IDENT? | IDENT); // period=1s, encoding=gorilla
+attributeDeclaration : /*annotation**/ 'att' IDENT ':' attributeType semanticDeclr? ('{' (annotation (',' annotation)*)? '}')?;
+
+relationDeclaration : /*annotation**/ 'rel' IDENT ':' (TYPE_NAME|IDENT) cardinality? relationIndex? /*semanticDeclr?*/ ;
+cardinality : '[' ('0..1' | '1..1' | '0..*' | '1..*') ']';
+relationIndex : 'indexed' 'by' IDENT (',' IDENT)*;
@@ -19,8 +19,17 @@ public interface Index extends Classifier {
 
     Property[] properties();
 
+    String[] propertyNames();
+
     void addProperty(String value);
 
     Class type();
 
+    /**
+     * Whether the index keeps its single numeric key sorted, to answer range queries.
+     */
+    boolean ordered();
+
+    void setOrdered();
+
 }
\ No newline at end of file
@@ -28,29 +28,46 @@ import java.util.List;
 
 public class ModelBuilder {
 
+    /**
+     * Type of the attributes declared as timeseries, their sampling period and encoding are held by the parameters.
+     */
+    public static final String TIMESERIES = "timeseries";
+
     public static void main(String[] args) throws Exception {
         System.out.println(parse(new File("/Users/duke/dev/dsl/src/main/exemples/ml_1.mm")));
     }
 
     public static Model parse(String content) {
         Model model = new ModelImpl();
-        return build(new ANTLRInputStream(content), model);
+        return build(syntax(content), model);
     }
 
     public static Model parse(File content) throws Exception {
         Model model = new ModelImpl();
-        return build(new ANTLRFileStream(content.getAbsolutePath()), model);
+        return build(syntax(new ANTLRFileStream(content.getAbsolutePath())), model);
     }
 
     public static Model parse(File content, Model model) throws Exception {
-        return build(new ANTLRFileStream(content.getAbsolutePath()), model);
+        return build(syntax(new ANTLRFileStream(content.getAbsolutePath())), model);
     }
 
-    private static Model build(ANTLRInputStream in, Model model) {
+    /**
+     * Lexes and parses the content, without building the model.
+     */
+    public static org.greycat.plugins.tmart.model.ast.MetaModelParser.MetamodelContext syntax(String content) {
+        return syntax(new ANTLRInputStream(content));
+    }
 
+    private static org.greycat.plugins.tmart.model.ast.MetaModelParser.MetamodelContext syntax(ANTLRInputStream in) {
         BufferedTokenStream tokens = new CommonTokenStream(new org.greycat.plugins.tmart.model.ast.MetaModelLexer(in));
         org.greycat.plugins.tmart.model.ast.MetaModelParser parser = new org.greycat.plugins.tmart.model.ast.MetaModelParser(tokens);
-        org.greycat.plugins.tmart.model.ast.MetaModelParser.MetamodelContext mmctx = parser.metamodel();
+        return parser.metamodel();
+    }
+
+    /**
+     * Builds the classifiers of a parse tree into the model.
+     */
+    public static Model build(org.greycat.plugins.tmart.model.ast.MetaModelParser.MetamodelContext mmctx, Model model) {
         for (org.greycat.plugins.tmart.model.ast.MetaModelParser.EnumDeclrContext enumDeclrContext : mmctx.enumDeclr()) {
             String fqn = null;
             if (enumDeclrContext.TYPE_NAME() != null) {
@@ -90,12 +107,17 @@ public class ModelBuilder {
                 String value;
                 if (attType.TYPE_NAME() != null) {
                     value = attType.TYPE_NAME().getText();
+                } else if (attType.timeseriesType() != null) {
+                    value = TIMESERIES;
                 } else {
                     value = attType.getText();
                 }
                 final Attribute attribute = new AttributeImpl(name, value);
+                if (attType.timeseriesType() != null) {
+                    processTimeseries(attribute, attType.timeseriesType());
+                }
                 processAnnotations(attribute, attDecl.annotation());
-//                processSemanticBloc(attribute, attDecl.semanticDeclr());
+                processSemanticBloc(attribute, attDecl.semanticDeclr());
                 newClass.addProperty(attribute);
             }
             for (org.greycat.plugins.tmart.model.ast.MetaModelParser.RelationDeclarationContext relDecl : classDeclrContext.relationDeclaration()) {
@@ -107,6 +129,15 @@ public class ModelBuilder {
                     type = relDecl.TYPE_NAME().toString();
                 }
                 final Relation relation = new RelationImpl(name, type);
+                if (relDecl.cardinality() != null) {
+                    String cardinality = relDecl.cardinality().getChild(1).getText();
+                    relation.setCardinality(cardinality.startsWith("1") ? 1 : 0, cardinality.endsWith("*") ? -1 : 1);
+                }
+                if (relDecl.relationIndex() != null) {
+                    for (TerminalNode attribute : relDecl.relationIndex().IDENT()) {
+                        relation.addIndexedBy(attribute.getText());
+                    }
+                }
                 //processAnnotations(relation, relDecl.annotation());
 //                processSemanticBloc(relation, relDecl.semanticDeclr());
                 newClass.addProperty(relation);
@@ -121,7 +152,10 @@ public class ModelBuilder {
             } else {
                 type = indexDeclrContext.TYPE_NAME().toString();
             }
-            final Index indexClass = (Index) getOrAddIndex(model, name, (Class) model.get(type));
+            final Index indexClass = (Index) getOrAddIndex(model, name, (Class) getOrAddClass(model, type));
+            if (indexDeclrContext.indexKind() != null) {
+                indexClass.setOrdered();
+            }
             for (TerminalNode literal : indexDeclrContext.indexLiterals().IDENT()) {
                 indexClass.addProperty(literal.getText());
             }
@@ -129,61 +163,159 @@ public class ModelBuilder {
         return model;
     }
 
+    /**
+     * Merges the enums and classes of a partial model, parsed from a single file, into the target model.
+     * Classes declared in several partials are merged property by property, parents are resolved by fqn.
+     * Indexes are merged separately by {@link #mergeIndexes(Model, Model)}, once all the classes are known.
+     */
+    public static Model merge(Model target, Model partial) {
+        for (Classifier classifier : partial.classifiers()) {
+            if (classifier instanceof Enum) {
+                final Enum merged = (Enum) getOrAddEnum(target, classifier.fqn());
+                for (String literal : ((Enum) classifier).literals()) {
+                    merged.addLiteral(literal);
+                }
+            } else if (classifier instanceof Class) {
+                final Class casted = (Class) classifier;
+                final Class merged = (Class) getOrAddClass(target, classifier.fqn());
+                for (Property property : casted.properties()) {
+                    merged.addProperty(property);
+                }
+                if (casted.parent() != null) {
+                    merged.setParent((Class) getOrAddClass(target, casted.parent().fqn()));
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Merges the indexes of a partial model into the target model, resolving their class and properties against the
+     * target. This is where an index can refer to a class declared in another file.
+     */
+    public static Model mergeIndexes(Model target, Model partial) {
+        for (Classifier classifier : partial.classifiers()) {
+            if (classifier instanceof Index) {
+                final Index casted = (Index) classifier;
+                final Index merged = (Index) getOrAddIndex(target, classifier.fqn(), (Class) getOrAddClass(target, casted.type().fqn()));
+                if (casted.ordered()) {
+                    merged.setOrdered();
+                }
+                for (String property : casted.propertyNames()) {
+                    merged.addProperty(property);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Parameters of a timeseries attribute: its sampling period, converted to milliseconds, and its encoding.
+     */
+    private static void processTimeseries(Property property, org.greycat.plugins.tmart.model.ast.MetaModelParser.TimeseriesTypeContext timeseries) {
+        property.addParameter("period", "0");
+        property.addParameter("encoding", "gorilla");
+        for (org.greycat.plugins.tmart.model.ast.MetaModelParser.TimeseriesParameterContext parameter : timeseries.timeseriesParameter()) {
+            String key = parameter.IDENT(0).getText();
+            if (key.equals("period")) {
+                if (parameter.NUMBER() == null) {
+                    throw new IllegalArgumentException("The period of " + property.name() + " must be a duration, such as 1s");
+                }
+                String unit = parameter.IDENT().size() > 1 ? parameter.IDENT(1).getText() : "ms";
+                long period = (long) (Double.parseDouble(parameter.NUMBER().getText()) * unitToMillis(property, unit));
+                property.addParameter(key, String.valueOf(period));
+            } else if (key.equals("encoding")) {
+                String encoding = parameter.getChild(2).getText();
+                if (!encoding.equals("gorilla") && !encoding.equals("raw")) {
+                    throw new IllegalArgumentException("Unknown encoding " + encoding + " of " + property.name() + ", expected gorilla or raw");
+                }
+                property.addParameter(key, encoding);
+            } else {
+                throw new IllegalArgumentException("Unknown parameter " + key + " of " + property.name());
+            }
+        }
+    }
+
+    private static long unitToMillis(Property property, String unit) {
+        switch (unit) {
+            case "ms":
+                return 1;
+            case "s":
+                return 1000;
+            case "m":
+                return 60 * 1000;
+            case "h":
+                return 60 * 60 * 1000;
+            case "d":
+                return 24 * 60 * 60 * 1000;
+        }
+        throw new IllegalArgumentException("Unknown unit " + unit + " in the period of " + property.name());
+    }
+
     private static void processAnnotations(Property property, List<org.greycat.plugins.tmart.model.ast.MetaModelParser.AnnotationContext> annotations) {
         if (annotations != null) {
             for (org.greycat.plugins.tmart.model.ast.MetaModelParser.AnnotationContext annotationContext : annotations) {
-                if (annotationContext.getText().equals("learned")) {
+                String annotation = annotationContext.getChild(0).getText();
+                if (annotation.equals("learned")) {
                     property.setLearned();
-                } else if (annotationContext.getText().equals("derived")) {
+                } else if (annotation.equals("derived")) {
                     property.setDerived();
-                } else if (annotationContext.getText().equals("global")) {
+                } else if (annotation.equals("global")) {
                     property.setGlobal();
-                } else if(annotationContext.getText().equals("continuous")) {
+                } else if(annotation.equals("continuous")) {
                     property.setContinuous();
-                } else if(annotationContext.getText().equals("monitorSeparation")) {
+                } else if(annotation.equals("monitorSeparation")) {
                     property.setMonitorSeparation();
                 }
-
+                if (annotationContext.annotationParameters() != null) {
+                    for (org.greycat.plugins.tmart.model.ast.MetaModelParser.AnnotationParameterContext parameter : annotationContext.annotationParameters().annotationParameter()) {
+                        property.addParameter(parameter.IDENT().getText(), parameter.NUMBER().getText());
+                    }
+                }
             }
         }
     }
 
-//    private static void processSemanticBloc(Property property, org.greycat.plugins.tmart.model.ast.MetaModelParser.SemanticDeclrContext semanticDeclrContext) {
-//        if (semanticDeclrContext != null) {
-//            if (semanticDeclrContext.semanticFrom() != null) {
-//                for (org.kevoree.modeling.ast.MetaModelParser.SemanticFromContext fromContext : semanticDeclrContext.semanticFrom()) {
-//                    String val = fromContext.STRING().getText();
-//                    val = val.substring(1, val.length() - 1);
-//                    Dependency dependency = new Dependency(val);
-//                    property.addDependency(dependency);
-//                }
-//            }
-//            if (semanticDeclrContext.semanticUsing() != null) {
-//                for (org.kevoree.modeling.ast.MetaModelParser.SemanticUsingContext usingContext : semanticDeclrContext.semanticUsing()) {
-//                    String val = usingContext.STRING().getText();
-//                    val = val.substring(1, val.length() - 1);
-//                    property.setAlgorithm(val);
-//                }
-//            }
-//            if (semanticDeclrContext.semanticWith() != null) {
-//                for (org.kevoree.modeling.ast.MetaModelParser.SemanticWithContext withContext : semanticDeclrContext.semanticWith()) {
-//                    String value;
-//                    if (withContext.NUMBER() != null) {
-//                        value = withContext.NUMBER().getText();
-//                    } else if (withContext.STRING() != null) {
-//                        String val = withContext.STRING().getText();
-//                        val = val.substring(1, val.length() - 1);
-//                        value = val;
-//                    } else {
-//                        value = null;
-//                    }
-//                    if (value != null) {
-//                        property.addParameter(withContext.IDENT().getText(), value);
-//                    }
-//                }
-//            }
-//        }
-//    }
+    /**
+     * Semantic clauses of an attribute: from names an attribute it depends on, using names its algorithm or its
+     * derivation function, and with adds a parameter.
+     */
+    private static void processSemanticBloc(Property property, org.greycat.plugins.tmart.model.ast.MetaModelParser.SemanticDeclrContext semanticDeclrContext) {
+        if (semanticDeclrContext != null) {
+            if (semanticDeclrContext.semanticFrom() != null) {
+                for (org.greycat.plugins.tmart.model.ast.MetaModelParser.SemanticFromContext fromContext : semanticDeclrContext.semanticFrom()) {
+                    String val = fromContext.STRING().getText();
+                    val = val.substring(1, val.length() - 1);
+                    Dependency dependency = new DependencyImpl(val);
+                    property.addDependency(dependency);
+                }
+            }
+            if (semanticDeclrContext.semanticUsing() != null) {
+                for (org.greycat.plugins.tmart.model.ast.MetaModelParser.SemanticUsingContext usingContext : semanticDeclrContext.semanticUsing()) {
+                    String val = usingContext.STRING().getText();
+                    val = val.substring(1, val.length() - 1);
+                    property.setAlgorithm(val);
+                }
+            }
+            if (semanticDeclrContext.semanticWith() != null) {
+                for (org.greycat.plugins.tmart.model.ast.MetaModelParser.SemanticWithContext withContext : semanticDeclrContext.semanticWith()) {
+                    String value;
+                    if (withContext.NUMBER() != null) {
+                        value = withContext.NUMBER().getText();
+                    } else if (withContext.STRING() != null) {
+                        String val = withContext.STRING().getText();
+                        val = val.substring(1, val.length() - 1);
+                        value = val;
+                    } else {
+                        value = null;
+                    }
+                    if (value != null) {
+                        property.addParameter(withContext.IDENT().getText(), value);
+                    }
+                }
+            }
+        }
+    }
 
     private static Classifier getOrAddClass(Model model, String fqn) {
         Classifier previous = model.get(fqn);
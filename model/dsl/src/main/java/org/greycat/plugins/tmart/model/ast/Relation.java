@@ -16,4 +16,24 @@
 package org.greycat.plugins.tmart.model.ast;
 
 public interface Relation extends Property {
+
+    /**
+     * Attributes of the targets the relation is indexed by, empty for a plain relation.
+     */
+    String[] indexedBy();
+
+    void addIndexedBy(String attribute);
+
+    /**
+     * Minimum number of targets, 0 or 1.
+     */
+    int lower();
+
+    /**
+     * Maximum number of targets, 1 for a single-valued relation, -1 when unbounded.
+     */
+    int upper();
+
+    void setCardinality(int lower, int upper);
+
 }
@@ -30,6 +30,8 @@ public class ClassImpl implements org.greycat.plugins.tmart.model.ast.Class {
 
     private org.greycat.plugins.tmart.model.ast.Class parent;
 
+    private Property[] cache;
+
     public ClassImpl(String fqn) {
         if (fqn.contains(".")) {
             name = fqn.substring(fqn.lastIndexOf('.') + 1);
@@ -43,22 +45,22 @@ public class ClassImpl implements org.greycat.plugins.tmart.model.ast.Class {
 
     @Override
     public Property[] properties() {
-        return properties.values().toArray(new Property[properties.size()]);
+        //shared between callers, rebuilt only when a property is added
+        if (cache == null) {
+            cache = properties.values().toArray(new Property[properties.size()]);
+        }
+        return cache;
     }
 
     @Override
     public Property property(String name) {
-        for (Property property : properties()) {
-            if (property.name().equals(name)) {
-                return property;
-            }
-        }
-        return null;
+        return properties.get(name);
     }
 
     @Override
     public void addProperty(Property property) {
         properties.put(property.name(), property);
+        cache = null;
     }
 
     @Override
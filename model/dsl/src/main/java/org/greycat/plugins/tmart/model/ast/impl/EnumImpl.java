@@ -15,8 +15,8 @@
  */
 package org.greycat.plugins.tmart.model.ast.impl;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 public class EnumImpl implements org.greycat.plugins.tmart.model.ast.Enum {
 
@@ -34,7 +34,8 @@ public class EnumImpl implements org.greycat.plugins.tmart.model.ast.Enum {
             name = fqn;
             pack = null;
         }
-        literals = new TreeSet<String>();
+        //declaration order, the ordinals stored for enum attributes follow it
+        literals = new LinkedHashSet<String>();
     }
 
     @Override
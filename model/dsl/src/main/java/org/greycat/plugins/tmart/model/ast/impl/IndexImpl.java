@@ -18,12 +18,14 @@ package org.greycat.plugins.tmart.model.ast.impl;
 import org.greycat.plugins.tmart.model.ast.Class;
 import org.greycat.plugins.tmart.model.ast.Property;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
 public class IndexImpl implements org.greycat.plugins.tmart.model.ast.Index {
 
-    private final Set<Property> literals;
+    private final Set<String> literals;
 
     private final String pack;
 
@@ -31,6 +33,8 @@ public class IndexImpl implements org.greycat.plugins.tmart.model.ast.Index {
 
     private final Class clazz;
 
+    private boolean ordered = false;
+
     public IndexImpl(String fqn, Class clazz) {
         this.clazz = clazz;
         if (fqn.contains(".")) {
@@ -40,19 +44,35 @@ public class IndexImpl implements org.greycat.plugins.tmart.model.ast.Index {
             name = fqn;
             pack = null;
         }
-        literals = new TreeSet<Property>();
+        //declaration order, it is the order of the keys of the typed finders
+        literals = new LinkedHashSet<String>();
     }
 
     @Override
     public Property[] properties() {
-        return literals.toArray(new Property[literals.size()]);
+        List<Property> result = new ArrayList<Property>();
+        for (String literal : literals) {
+            Property prop = clazz.property(literal);
+            if (prop != null) {
+                result.add(prop);
+            }
+        }
+        return result.toArray(new Property[result.size()]);
+    }
+
+    @Override
+    public String[] propertyNames() {
+        return literals.toArray(new String[literals.size()]);
     }
 
     @Override
     public void addProperty(String value) {
+        literals.add(value);
+        //the property may be declared later, in another file, it is then linked when the models are merged
         Property prop = clazz.property(value);
-        literals.add(prop);
-        prop.addIndex(this);
+        if (prop != null) {
+            prop.addIndex(this);
+        }
     }
 
     @Override
@@ -60,6 +80,16 @@ public class IndexImpl implements org.greycat.plugins.tmart.model.ast.Index {
         return this.clazz;
     }
 
+    @Override
+    public boolean ordered() {
+        return ordered;
+    }
+
+    @Override
+    public void setOrdered() {
+        ordered = true;
+    }
+
     @Override
     public String name() {
         return name;
@@ -25,18 +25,25 @@ public class ModelImpl implements Model {
 
     private final Map<String, Classifier> classifiers;
 
+    private Classifier[] cache;
+
     public ModelImpl() {
         classifiers = new HashMap<String, Classifier>();
     }
 
     @Override
     public Classifier[] classifiers() {
-        return classifiers.values().toArray(new Classifier[classifiers.size()]);
+        //shared between callers, rebuilt only when a classifier is added
+        if (cache == null) {
+            cache = classifiers.values().toArray(new Classifier[classifiers.size()]);
+        }
+        return cache;
     }
 
     @Override
     public void addClassifier(Classifier classifier) {
         classifiers.put(classifier.fqn(), classifier);
+        cache = null;
     }
 
     @Override
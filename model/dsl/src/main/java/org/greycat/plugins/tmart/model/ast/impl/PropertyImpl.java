@@ -81,6 +81,12 @@ public abstract class PropertyImpl implements org.greycat.plugins.tmart.model.as
 
     @Override
     public void addIndex(Index index) {
+        for (int i = 0; i < indexes.size(); i++) {
+            if (indexes.get(i).fqn().equals(index.fqn())) {
+                indexes.set(i, index);
+                return;
+            }
+        }
         indexes.add(index);
     }
 
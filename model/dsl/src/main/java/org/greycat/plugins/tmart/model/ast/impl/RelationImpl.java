@@ -15,8 +15,45 @@
  */
 package org.greycat.plugins.tmart.model.ast.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class RelationImpl extends PropertyImpl implements org.greycat.plugins.tmart.model.ast.Relation {
+
+    private final List<String> indexedBy;
+
+    private int lower = 0;
+
+    private int upper = -1;
+
     public RelationImpl(String name, String type) {
         super(name, type);
+        indexedBy = new ArrayList<String>();
+    }
+
+    @Override
+    public String[] indexedBy() {
+        return indexedBy.toArray(new String[indexedBy.size()]);
+    }
+
+    @Override
+    public void addIndexedBy(String attribute) {
+        indexedBy.add(attribute);
+    }
+
+    @Override
+    public int lower() {
+        return lower;
+    }
+
+    @Override
+    public int upper() {
+        return upper;
+    }
+
+    @Override
+    public void setCardinality(int lower, int upper) {
+        this.lower = lower;
+        this.upper = upper;
     }
 }
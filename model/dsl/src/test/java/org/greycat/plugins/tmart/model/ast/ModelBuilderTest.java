@@ -0,0 +1,101 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.model.ast;
+
+import org.greycat.plugins.tmart.model.ast.impl.ModelImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModelBuilderTest {
+
+    /**
+     * Merges the partials in order, then their indexes, as the generator does.
+     */
+    private static Model mergeAll(String... contents) {
+        Model target = new ModelImpl();
+        Model[] partials = new Model[contents.length];
+        for (int i = 0; i < contents.length; i++) {
+            partials[i] = ModelBuilder.parse(contents[i]);
+            ModelBuilder.merge(target, partials[i]);
+        }
+        for (Model partial : partials) {
+            ModelBuilder.mergeIndexes(target, partial);
+        }
+        return target;
+    }
+
+    @Test
+    public void classMergedAcrossFiles() {
+        Model model = mergeAll(
+                "class a.Sensor { att name : String }",
+                "class a.Sensor { att value : Double }");
+        Class sensor = (Class) model.get("a.Sensor");
+        Assert.assertEquals(2, sensor.properties().length);
+        Assert.assertNotNull(sensor.property("name"));
+        Assert.assertNotNull(sensor.property("value"));
+    }
+
+    @Test
+    public void parentResolvedAcrossFiles() {
+        Model model = mergeAll(
+                "class a.Child extends a.Parent { att level : Integer }",
+                "class a.Parent { att name : String }");
+        Class child = (Class) model.get("a.Child");
+        Assert.assertSame(model.get("a.Parent"), child.parent());
+        Assert.assertNotNull(child.parent().property("name"));
+    }
+
+    @Test
+    public void indexResolvedAgainstClassOfOtherFile() {
+        Model model = mergeAll(
+                "index sensors : a.Sensor { name }",
+                "class a.Sensor { att name : String }");
+        Index index = (Index) model.get("sensors");
+        Assert.assertSame(model.get("a.Sensor"), index.type());
+        Assert.assertEquals(1, index.properties().length);
+        Property name = ((Class) model.get("a.Sensor")).property("name");
+        Assert.assertSame(name, index.properties()[0]);
+        Assert.assertArrayEquals(new Index[]{index}, name.indexes());
+    }
+
+    @Test
+    public void indexDeclaredWithItsClassLinkedOnce() {
+        Model model = mergeAll("class a.Sensor { att name : String }\nindex sensors : a.Sensor { name }");
+        Property name = ((Class) model.get("a.Sensor")).property("name");
+        Assert.assertEquals(1, name.indexes().length);
+        Assert.assertSame(model.get("sensors"), name.indexes()[0]);
+    }
+
+    @Test
+    public void indexMergedAcrossFiles() {
+        Model model = mergeAll(
+                "class a.Sensor { att counter : Long }",
+                "index byCounter : a.Sensor ordered { counter }",
+                "index byCounter : a.Sensor { counter }");
+        Index index = (Index) model.get("byCounter");
+        Assert.assertTrue(index.ordered());
+        Assert.assertArrayEquals(new String[]{"counter"}, index.propertyNames());
+    }
+
+    @Test
+    public void enumLiteralsKeepTheirFirstPosition() {
+        Model model = mergeAll(
+                "enum a.Status { IDLE, RUNNING }",
+                "enum a.Status { RUNNING, FAILED }");
+        Assert.assertArrayEquals(new String[]{"IDLE", "RUNNING", "FAILED"}, ((Enum) model.get("a.Status")).literals());
+    }
+
+}
@@ -18,7 +18,6 @@ package org.greycat.plugins.tmart.model.generator;
 
 import greycat.*;
 import greycat.base.BaseNode;
-import greycat.internal.CoreDeferCounter;
 import greycat.plugin.Job;
 import greycat.plugin.NodeFactory;
 import greycat.struct.Buffer;
@@ -31,48 +30,289 @@ import org.jboss.forge.roaster.model.Visibility;
 import org.jboss.forge.roaster.model.source.*;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Generator {
 
     public static String extension = ".mm";
 
+    public static final String VERSION = "1.0-SNAPSHOT";
+
+    /**
+     * Algorithm backing continuous attributes: the samples are approximated by polynomials, within the precision
+     * given in the metamodel, instead of storing one timepoint each.
+     */
+    public static final String CONTINUOUS_ALGORITHM = "PolynomialNode";
+
     private Model model = new ModelImpl();
 
     private List<JavaSource> sources;
 
+    /**
+     * Fqn of the classifier each source belongs to, null for the model wide sources.
+     */
+    private Map<JavaSource, String> owners;
+
+    /**
+     * Lists the files written by the last generation in the target, with their owner.
+     */
+    private static final String MANIFEST = ".tmart-generated";
+
+    private boolean blockingAccessors = true;
+
+    /**
+     * Derived attributes of each class, by the fully qualified name of the class declaring them, then by the name of
+     * each attribute they depend on. Computed by {@link #emit(String, Set)}.
+     */
+    private Map<String, Map<String, Set<String>>> dependents;
+
+    /**
+     * Slot of each derived attribute in the derived cache, by the fully qualified name of its class and its name.
+     */
+    private Map<String, Integer> derivedSlots;
+
+    /**
+     * Whether the model declares indexes, ordered indexes and derived attributes, the queue, ordered index and cache
+     * supporting them are only generated when it does. Computed by {@link #emit(String, Set)}.
+     */
+    private boolean usesIndexes;
+    private boolean usesOrdered;
+    private boolean usesFinders;
+    private boolean usesDerived;
+
+    public Generator() {
+    }
+
+    /**
+     * Generates an already built model instead of scanning metamodel files.
+     */
+    public Generator(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Whether blocking accessors are generated on top of all the non-blocking ones: algorithm-backed and learned
+     * attributes, relations, indexed and single-valued relations, history and aggregate reads. The blocking versions
+     * park the calling thread until the graph answers.
+     */
+    public void setBlockingAccessors(boolean blockingAccessors) {
+        this.blockingAccessors = blockingAccessors;
+    }
+
     public void scan(File target) throws Exception {
+        List<File> files = new ArrayList<File>();
         String[] everythingInThisDir = target.list();
         for (String name : everythingInThisDir) {
             if (name.trim().endsWith(extension)) {
-                ModelBuilder.parse(new File(target, name), model);
+                files.add(new File(target, name));
             }
         }
+        Collections.sort(files);
+        parse(files);
     }
 
     public void deepScan(File target) throws Exception {
+        parse(listFiles(target));
+    }
+
+    /**
+     * Parses the files concurrently, each one into its own partial model, then merges the partials in the order of
+     * the files. Indexes are merged last so that they can refer to classes declared in any file.
+     */
+    private void parse(List<File> files) throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<ForkJoinTask<Model>> tasks = new ArrayList<ForkJoinTask<Model>>();
+        for (final File file : files) {
+            tasks.add(pool.submit(new Callable<Model>() {
+                @Override
+                public Model call() throws Exception {
+                    return ModelBuilder.parse(file);
+                }
+            }));
+        }
+        List<Model> partials = new ArrayList<Model>();
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                partials.add(tasks.get(i).get());
+            } catch (ExecutionException e) {
+                throw new Exception("Cannot parse " + files.get(i).getAbsolutePath(), e.getCause());
+            }
+        }
+        for (Model partial : partials) {
+            ModelBuilder.merge(model, partial);
+        }
+        for (Model partial : partials) {
+            ModelBuilder.mergeIndexes(model, partial);
+        }
+    }
+
+    /**
+     * All metamodel files below the target directory, sorted by path.
+     */
+    public static List<File> listFiles(File target) {
+        List<File> result = new ArrayList<File>();
+        collectFiles(target, result);
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void collectFiles(File target, List<File> result) {
         String[] everythingInThisDir = target.list();
+        if (everythingInThisDir == null) {
+            return;
+        }
         for (String name : everythingInThisDir) {
+            File current = new File(target, name);
             if (name.trim().endsWith(extension)) {
-                ModelBuilder.parse(new File(target, name), model);
-            } else {
-                File current = new File(target, name);
-                if (current.isDirectory()) {
-                    deepScan(current);
+                result.add(current);
+            } else if (current.isDirectory()) {
+                collectFiles(current, result);
+            }
+        }
+    }
+
+    /**
+     * Identifies the generator build, so that its output is considered stale when the generator itself changes: the
+     * version followed by a digest of the content of the jar, or of the classes directory, the generator is loaded
+     * from. Rebuilding an unchanged generator, or touching its jar, keeps the same identity.
+     */
+    public static String version() {
+        StringBuilder builder = new StringBuilder(VERSION);
+        try {
+            File location = new File(Generator.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest(location, digest);
+            builder.append('-');
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+        } catch (Exception e) {
+            //no code source, the version alone identifies the generator
+        }
+        return builder.toString();
+    }
+
+    private static void digest(File file, MessageDigest digest) throws IOException {
+        if (file.isDirectory()) {
+            String[] names = file.list();
+            if (names == null) {
+                return;
+            }
+            Arrays.sort(names);
+            for (String name : names) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                digest(new File(file, name), digest);
+            }
+        } else {
+            digest.update(Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    /**
+     * Computes the fqn of the classifiers whose generated sources depend on the given files: the classifiers declared
+     * in them, the classes of the indexes declared in them, and all the subclasses of those.
+     * Must be called after the scan. Returns null when the dependencies cannot be determined.
+     */
+    public Set<String> affectedBy(Collection<File> files) {
+        Set<String> affected = new HashSet<String>();
+        for (File file : files) {
+            Model partial;
+            try {
+                partial = ModelBuilder.parse(file);
+            } catch (Exception e) {
+                return null;
+            }
+            for (Classifier classifier : partial.classifiers()) {
+                affected.add(classifier.fqn());
+                if (classifier instanceof Index && ((Index) classifier).type() != null) {
+                    affected.add(((Index) classifier).type().fqn());
+                }
+            }
+        }
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Class) {
+                Class parent = ((Class) classifier).parent();
+                while (parent != null) {
+                    if (affected.contains(parent.fqn())) {
+                        affected.add(classifier.fqn());
+                        break;
+                    }
+                    parent = parent.parent();
                 }
             }
         }
+        return affected;
+    }
+
+    public void generate(String name, File target) throws IOException {
+        generate(name, target, null);
+    }
+
+    /**
+     * Generates the model. When affected is not null, only the sources of these classifiers are re-emitted, together
+     * with the model wide ones (plugin, model, task API...), the others are left untouched in the target.
+     */
+    public void generate(String name, File target, Set<String> affected) throws IOException {
+        emit(name, affected);
+        write(target, affected);
     }
 
-    public void generate(String name, File target) {
+    /**
+     * Builds the sources in memory, without writing them. They are written by {@link #write(File, Set)}.
+     */
+    public void emit(String name, Set<String> affected) {
         boolean useML = false;
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Class) {
+                for (Property prop : ((Class) classifier).properties()) {
+                    if (prop instanceof Attribute && algorithmOf(prop) != null) {
+                        useML = true;
+                    }
+                }
+            }
+        }
 
+        derivedDependents();
+        usesIndexes = false;
+        usesOrdered = false;
+        usesFinders = false;
+        usesDerived = false;
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Index) {
+                usesIndexes = true;
+                usesOrdered |= ((Index) classifier).ordered();
+                usesFinders |= !((Index) classifier).ordered();
+            } else if (classifier instanceof Class) {
+                for (Property prop : ((Class) classifier).properties()) {
+                    usesDerived |= prop instanceof Attribute && prop.derived();
+                }
+            }
+        }
         sources = new ArrayList<JavaSource>();
+        owners = new IdentityHashMap<JavaSource, String>();
         //Generate all NodeType
         for (Classifier classifier : model.classifiers()) {
+            if (affected != null && !affected.contains(classifier.fqn())) {
+                continue;
+            }
             if (classifier instanceof Enum) {
                 Enum loopEnum = (Enum) classifier;
                 final JavaEnumSource javaEnum = Roaster.create(JavaEnumSource.class);
@@ -83,7 +323,25 @@ public class Generator {
                 for (String literal : loopEnum.literals()) {
                     javaEnum.addEnumConstant(literal);
                 }
-                sources.add(javaEnum);
+                //enum attributes are stored as ordinals, this table turns them back into literals
+                javaEnum.addField()
+                        .setVisibility(Visibility.PRIVATE)
+                        .setStatic(true)
+                        .setFinal(true)
+                        .setName("BY_ORDINAL")
+                        .setType(classifier.name() + "[]")
+                        .setLiteralInitializer("values()");
+                javaEnum.addMethod()
+                        .setVisibility(Visibility.PUBLIC)
+                        .setStatic(true)
+                        .setName("fromOrdinal")
+                        .setReturnType(classifier.name())
+                        .setBody("if (ordinal < 0 || ordinal >= BY_ORDINAL.length) {\n" +
+                                "throw new IllegalArgumentException(\"No literal of " + classifier.name() + " has the ordinal \" + ordinal);\n" +
+                                "}\n" +
+                                "return BY_ORDINAL[ordinal];")
+                        .addParameter(int.class, "ordinal");
+                addSource(javaEnum, classifier);
             } else if (classifier instanceof Class) {
                 final JavaClassSource javaClass = Roaster.create(JavaClassSource.class);
                 Class loopClass = (Class) classifier;
@@ -115,8 +373,42 @@ public class Generator {
                         .setStringInitializer(javaClass.getCanonicalName())
                         .setStatic(true);
 
-                StringBuilder indexedProperties=null;
-                String indexName = null;
+                if (loopClass.parent() == null) {
+                    javaClass.addInterface(name + "ChangeHook");
+
+                    if (usesIndexes) {
+                        //index queue, attached by the plugin factory
+                        javaClass.addField()
+                                .setVisibility(Visibility.PROTECTED)
+                                .setName("_indexQueue")
+                                .setType(name + "IndexQueue");
+
+                        javaClass.addMethod()
+                                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                .setName("internal_setIndexQueue")
+                                .setReturnTypeVoid()
+                                .setBody("this._indexQueue = queue;")
+                                .addParameter(name + "IndexQueue", "queue");
+                    }
+
+                    if (usesDerived) {
+                        //derived values cache, attached by the plugin factory
+                        javaClass.addField()
+                                .setVisibility(Visibility.PROTECTED)
+                                .setName("_derivedCache")
+                                .setType(name + "DerivedCache");
+
+                        javaClass.addMethod()
+                                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                .setName("internal_setDerivedCache")
+                                .setReturnTypeVoid()
+                                .setBody("this._derivedCache = cache;")
+                                .addParameter(name + "DerivedCache", "cache");
+                    }
+                }
+
+                boolean indexed = false;
+                boolean monitored = false;
                 for (Property prop : loopClass.properties()) {
 
                     //add helper name
@@ -128,6 +420,15 @@ public class Generator {
                             .setStringInitializer(prop.name())
                             .setStatic(true);
 
+                    //add precomputed hash of the name
+                    javaClass.addField()
+                            .setVisibility(Visibility.PUBLIC)
+                            .setFinal(true)
+                            .setName(prop.name().toUpperCase() + "_H")
+                            .setType(int.class)
+                            .setLiteralInitializer("greycat.utility.HashHelper.hash(" + prop.name().toUpperCase() + ")")
+                            .setStatic(true);
+
                     if (prop instanceof Attribute) {
                         javaClass.addImport(Type.class);
                         FieldSource<JavaClassSource> typeHelper = javaClass.addField()
@@ -152,15 +453,39 @@ public class Generator {
                             case "Boolean":
                                 typeHelper.setLiteralInitializer("Type.BOOL");
                                 break;
+                            case "DoubleArray":
+                                typeHelper.setLiteralInitializer("Type.DOUBLE_ARRAY");
+                                break;
+                            case "LongArray":
+                                typeHelper.setLiteralInitializer("Type.LONG_ARRAY");
+                                break;
+                            case "IntArray":
+                                typeHelper.setLiteralInitializer("Type.INT_ARRAY");
+                                break;
+                            case "LongToLongMap":
+                                typeHelper.setLiteralInitializer("Type.LONG_TO_LONG_MAP");
+                                break;
+                            case ModelBuilder.TIMESERIES:
+                                typeHelper.setLiteralInitializer("Type.LONG_ARRAY");
+                                break;
                             default:
-                                throw new RuntimeException("Unknown type: " + prop.type() + ". Please update the generator.");
+                                if (enumOf(prop) == null) {
+                                    throw new RuntimeException("Unknown type: " + prop.type() + ". Please update the generator.");
+                                }
+                                typeHelper.setLiteralInitializer("Type.INT");
                         }
                     }
 
                     //POJO generation
-                    if (!prop.derived() && !prop.learned()) {
-
-                        if (prop instanceof Relation) {
+                    if (prop.derived() && prop instanceof Attribute) {
+                        generateDerivedAccessors(javaClass, loopClass, prop, name);
+                    } else if (!prop.derived() && !prop.learned()) {
+
+                        if (prop instanceof Relation && ((Relation) prop).upper() == 1) {
+                            generateSingleRelationAccessors(javaClass, classifier, (Relation) prop);
+                        } else if (prop instanceof Relation && ((Relation) prop).indexedBy().length > 0) {
+                            generateIndexedRelationAccessors(javaClass, classifier, (Relation) prop);
+                        } else if (prop instanceof Relation) {
                             //generate getter
                             String resultType = typeToClassName(prop.type());
                             MethodSource<JavaClassSource> getter = javaClass.addMethod();
@@ -170,7 +495,7 @@ public class Generator {
                             getter.setName(toCamelCase("get " + prop.name()));
                             getter.addParameter("greycat.Callback<" + resultType + "[]>","callback");
                             getter.setBody(
-                                   "this.relation(" + prop.name().toUpperCase() + ",new greycat.Callback<greycat.Node[]>() {\n" +
+                                   "this.relationAt(" + prop.name().toUpperCase() + "_H,new greycat.Callback<greycat.Node[]>() {\n" +
                                            "@Override\n" +
                                            "public void on(greycat.Node[] nodes) {\n" +
                                            resultType + "[] result = new " + resultType + "[nodes.length];\n" +
@@ -182,6 +507,8 @@ public class Generator {
                                            "});"
                             );
 
+                            generateRelationViews(javaClass, (Relation) prop, "greycat.struct.Relation");
+
 
 
                             //generate setter
@@ -191,7 +518,7 @@ public class Generator {
                             add.setName(toCamelCase("addTo " + prop.name()));
                             add.setReturnType(formatFqn(classifier));
                             add.addParameter(typeToClassName(prop.type()), "value");
-                            bodyBuilder.append("super.addToRelation(").append(prop.name().toUpperCase()).append(",(greycat.Node)value);");
+                            bodyBuilder.append("super.addToRelationAt(").append(prop.name().toUpperCase()).append("_H,(greycat.Node)value);");
                             if(prop.parameters().get("opposite") != null) { //todo optimize
                                 String methoName = prop.parameters().get("opposite");
                                 bodyBuilder.append("value.internal_addTo")
@@ -212,7 +539,7 @@ public class Generator {
                             remove.setName(toCamelCase("removeFrom " + prop.name()));
                             remove.setReturnType(formatFqn(classifier));
                             remove.addParameter(typeToClassName(prop.type()), "value");
-                            bodyBuilder.append("super.removeFromRelation(").append(prop.name().toUpperCase()).append(",(greycat.Node)value);");
+                            bodyBuilder.append("super.removeFromRelationAt(").append(prop.name().toUpperCase()).append("_H,(greycat.Node)value);");
                             if(prop.parameters().get("opposite") != null) { //todo optimize
                                 String methoName = prop.parameters().get("opposite");
                                 bodyBuilder.append("value.internal_removeFrom")
@@ -233,73 +560,165 @@ public class Generator {
                                 internalRemove.setName(toCamelCase("internal_removeFrom " + prop.name()));
                                 internalRemove.setReturnTypeVoid();
                                 internalRemove.addParameter(typeToClassName(prop.type()),"value");
-                                internalRemove.setBody("super.removeFromRelation(" + prop.name().toUpperCase() + ",(greycat.Node)value);");
+                                internalRemove.setBody("super.removeFromRelationAt(" + prop.name().toUpperCase() + "_H,(greycat.Node)value);");
 
                                 MethodSource<JavaClassSource> internalAdd = javaClass.addMethod();
                                 internalAdd.setVisibility(Visibility.PACKAGE_PRIVATE);
                                 internalAdd.setName(toCamelCase("internal_addTo " + prop.name()));
                                 internalAdd.setReturnTypeVoid();
                                 internalAdd.addParameter(typeToClassName(prop.type()),"value");
-                                internalAdd.setBody("super.addToRelation(" + prop.name().toUpperCase() + ",(greycat.Node)value);");
+                                internalAdd.setBody("super.addToRelationAt(" + prop.name().toUpperCase() + "_H,(greycat.Node)value);");
                             }
 
                         } else {
 
-                            if (prop.algorithm() != null) {
-                                useML = true;
+                            if (algorithmOf(prop) != null) {
+                                if (!prop.type().equals("Double")) {
+                                    throw new RuntimeException("Attribute " + prop.name() + " uses an algorithm and must be of type Double, found: " + prop.type());
+                                }
+                                if (prop.indexes().length > 0 || prop.getMonitorSeparation()) {
+                                    throw new RuntimeException("Attribute " + prop.name() + " uses an algorithm and can neither be indexed nor stored apart from its node");
+                                }
+                                String resultType = typeToClassName(prop.type());
                                 //attribute will be processed as a sub node
-                                //generate getter
-                                MethodSource<JavaClassSource> getter = javaClass.addMethod();
-                                getter.setVisibility(Visibility.PUBLIC).setFinal(true);
-                                getter.setReturnType(typeToClassName(prop.type()));
-                                getter.setName(toCamelCase("get " + prop.name()));
-
-                                getter.setBody("\t\tfinal DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
-                                        "this.relation(" + prop.name().toUpperCase() + ", new greycat.Callback<greycat.Node[]>() {\n" +
+                                //generate non-blocking getter
+                                MethodSource<JavaClassSource> asyncGetter = javaClass.addMethod();
+                                asyncGetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                asyncGetter.setReturnTypeVoid();
+                                asyncGetter.setName(toCamelCase("get " + prop.name()) + "Async");
+                                asyncGetter.addParameter("greycat.Callback<" + resultType + ">", "callback");
+                                asyncGetter.setBody("this.relationAt(" + prop.name().toUpperCase() + "_H, new greycat.Callback<greycat.Node[]>() {\n" +
                                         "@Override\n" +
                                         "public void on(greycat.Node[] raw) {\n" +
                                         "if (raw == null || raw.length == 0) {\n" +
-                                        "waiter.count();\n" +
+                                        "callback.on(null);\n" +
                                         "} else {\n" +
-                                        "RegressionNode casted = (RegressionNode) raw[0];\n" +
-                                        "casted.extrapolate(waiter.wrap());\n" +
+                                        "greycat.ml.RegressionNode casted = (greycat.ml.RegressionNode) raw[0];\n" +
+                                        "casted.extrapolate(callback);\n" +
+                                        "}\n" +
                                         "}\n" +
+                                        "});");
+
+                                MethodSource<JavaClassSource> futureGetter = javaClass.addMethod();
+                                futureGetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                futureGetter.setReturnType("java.util.concurrent.CompletableFuture<" + resultType + ">");
+                                futureGetter.setName(toCamelCase("get " + prop.name()) + "Async");
+                                futureGetter.setBody("final java.util.concurrent.CompletableFuture<" + resultType + "> future = new java.util.concurrent.CompletableFuture<" + resultType + ">();\n" +
+                                        asyncGetter.getName() + "(new greycat.Callback<" + resultType + ">() {\n" +
+                                        "@Override\n" +
+                                        "public void on(" + resultType + " result) {\n" +
+                                        "future.complete(result);\n" +
                                         "}\n" +
                                         "});\n" +
-                                        "return (" + typeToClassName(prop.type()) + ") waiter.waitResult();");
-
-                                //generate setter
-                                MethodSource<JavaClassSource> setter = javaClass.addMethod();
-                                setter.setVisibility(Visibility.PUBLIC).setFinal(true);
-                                setter.setName(toCamelCase("set " + prop.name()));
-                                setter.setReturnType(formatFqn(classifier));
-                                setter.addParameter(typeToClassName(prop.type()), "value");
+                                        "return future;");
+
+                                //generate non-blocking setter
+                                MethodSource<JavaClassSource> asyncSetter = javaClass.addMethod();
+                                asyncSetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                asyncSetter.setName(toCamelCase("set " + prop.name()) + "Async");
+                                asyncSetter.setReturnTypeVoid();
+                                asyncSetter.addParameter(resultType, "value").setFinal(true);
+                                asyncSetter.addParameter("greycat.Callback<Boolean>", "callback").setFinal(true);
+
+                                //resolves the model node, creating it with the parameters of the attribute the first time
+                                MethodSource<JavaClassSource> resolveModel = javaClass.addMethod();
+                                resolveModel.setVisibility(Visibility.PRIVATE);
+                                resolveModel.setName(toCamelCase("resolve " + prop.name()) + "Model");
+                                resolveModel.setReturnTypeVoid();
+                                resolveModel.addParameter(long.class, "time").setFinal(true);
+                                resolveModel.addParameter("greycat.Callback<greycat.ml.RegressionNode>", "callback").setFinal(true);
 
                                 StringBuffer buffer = new StringBuffer();
-                                buffer.append(" final DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
-                                        "        final " + formatFqn(classifier) + " selfPointer = this;\n" +
-                                        "        this.relation(" + prop.name().toUpperCase() + ", new greycat.Callback<greycat.Node[]>() {\n" +
+                                buffer.append("        final " + formatFqn(classifier) + " selfPointer = this;\n" +
+                                        "        this.relationAt(" + prop.name().toUpperCase() + "_H, new greycat.Callback<greycat.Node[]>() {\n" +
                                         "            @Override\n" +
                                         "            public void on(greycat.Node[] raw) {\n" +
                                         "                if (raw == null || raw.length == 0) {\n" +
-                                        "                    RegressionNode casted = (RegressionNode) graph().newTypedNode(world(),time(),\"" + prop.algorithm() + "\");\n" +
-                                        "                    selfPointer.addToRelation(" + prop.name().toUpperCase() + ",casted);\n");
+                                        "                    greycat.ml.RegressionNode casted = (greycat.ml.RegressionNode) graph().newTypedNode(world(),time,\"" + algorithmOf(prop) + "\");\n" +
+                                        "                    selfPointer.addToRelationAt(" + prop.name().toUpperCase() + "_H,casted);\n");
 
                                 for (String key : prop.parameters().keySet()) {
                                     buffer.append("casted.set(\"" + key + "\"," + prop.parameters().get(key) + ");\n");
                                 }
 
-                                buffer.append("                 casted.learn(value, waiter.wrap());\n" +
+                                buffer.append("                 callback.on(casted);\n" +
                                         "                } else {\n" +
-                                        "                    RegressionNode casted = (RegressionNode) raw[0];\n" +
-                                        "                    casted.learn(value, waiter.wrap());\n" +
+                                        "                    callback.on((greycat.ml.RegressionNode) raw[0]);\n" +
                                         "                }\n" +
                                         "            }\n" +
-                                        "        });\n" +
-                                        "        waiter.waitResult();\n" +
-                                        "        return this;");
+                                        "        });");
+
+                                resolveModel.setBody(buffer.toString());
+
+                                asyncSetter.setBody(resolveModel.getName() + "(time(), new greycat.Callback<greycat.ml.RegressionNode>() {\n" +
+                                        "@Override\n" +
+                                        "public void on(greycat.ml.RegressionNode casted) {\n" +
+                                        "casted.learn(value, callback);\n" +
+                                        "}\n" +
+                                        "});");
+
+                                MethodSource<JavaClassSource> futureSetter = javaClass.addMethod();
+                                futureSetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                futureSetter.setName(toCamelCase("set " + prop.name()) + "Async");
+                                futureSetter.setReturnType("java.util.concurrent.CompletableFuture<Boolean>");
+                                futureSetter.addParameter(resultType, "value");
+                                futureSetter.setBody("final java.util.concurrent.CompletableFuture<Boolean> future = new java.util.concurrent.CompletableFuture<Boolean>();\n" +
+                                        asyncSetter.getName() + "(value, new greycat.Callback<Boolean>() {\n" +
+                                        "@Override\n" +
+                                        "public void on(Boolean result) {\n" +
+                                        "future.complete(result);\n" +
+                                        "}\n" +
+                                        "});\n" +
+                                        "return future;");
+
+                                if (blockingAccessors) {
+                                    //blocking getter, wraps the non-blocking one
+                                    MethodSource<JavaClassSource> getter = javaClass.addMethod();
+                                    getter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                    getter.setReturnType(resultType);
+                                    getter.setName(toCamelCase("get " + prop.name()));
+                                    getter.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                                            asyncGetter.getName() + "(waiter.wrap());\n" +
+                                            "return (" + resultType + ") waiter.waitResult();");
+
+                                    //blocking setter, wraps the non-blocking one
+                                    MethodSource<JavaClassSource> setter = javaClass.addMethod();
+                                    setter.setVisibility(Visibility.PUBLIC).setFinal(true);
+                                    setter.setName(toCamelCase("set " + prop.name()));
+                                    setter.setReturnType(formatFqn(classifier));
+                                    setter.addParameter(resultType, "value");
+                                    setter.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                                            asyncSetter.getName() + "(value, waiter.wrap());\n" +
+                                            "waiter.waitResult();\n" +
+                                            "return this;");
+                                }
 
-                                setter.setBody(buffer.toString());
+                                generateLearningAccessors(javaClass, classifier, prop, resolveModel.getName(), timePackage(name));
+                            } else if (isTimeseries(prop)) {
+                                if (prop.indexes().length > 0 || prop.getMonitorSeparation()) {
+                                    throw new RuntimeException("Attribute " + prop.name() + " is a timeseries and can neither be indexed nor stored apart from its node");
+                                }
+                                generateTimeseriesAccessors(javaClass, classifier, prop, timePackage(name));
+                            } else if (isStruct(prop.type())) {
+                                if (prop.indexes().length > 0 || prop.getMonitorSeparation()) {
+                                    throw new RuntimeException("Attribute " + prop.name() + " is a " + prop.type() + " and can neither be indexed nor stored apart from its node");
+                                }
+                                if (nameToType(prop.type()) == Type.LONG_TO_LONG_MAP) {
+                                    generateMapAccessors(javaClass, classifier, prop);
+                                } else {
+                                    generateArrayAccessors(javaClass, classifier, prop);
+                                }
+                            } else if (prop.getMonitorSeparation()) {
+                                if (prop.indexes().length > 0) {
+                                    throw new RuntimeException("Attribute " + prop.name() + " is stored apart from its node and cannot be indexed");
+                                }
+                                monitored = true;
+                                generateMonitoredAccessors(javaClass, classifier, prop);
+                            } else if (enumOf(prop) != null) {
+                                if (prop.indexes().length > 0) {
+                                    indexed = true;
+                                }
+                                generateEnumAccessors(javaClass, classifier, prop, changeMarker(loopClass, prop, name));
                             } else {
 
                                 //generate getter
@@ -307,29 +726,69 @@ public class Generator {
                                 getter.setVisibility(Visibility.PUBLIC).setFinal(true);
                                 getter.setReturnType(typeToClassName(prop.type()));
                                 getter.setName(toCamelCase("get " + prop.name()));
-                                getter.setBody("return (" + typeToClassName(prop.type()) + ") super.get(" + prop.name().toUpperCase() + ");");
+                                getter.setBody("return (" + typeToClassName(prop.type()) + ") super.getAt(" + prop.name().toUpperCase() + "_H);");
 
+                                generateHistoryAccessors(javaClass, prop, timePackage(name));
+
+                                //setters of indexed attributes mark the node as dirty for each of its indexes,
+                                //those of attributes derived values depend on go through the change hook
+                                String indexMarker = changeMarker(loopClass, prop, name);
+                                if (prop.indexes().length > 0) {
+                                    indexed = true;
+                                }
 
                                 //generate setter
                                 javaClass.addMethod()
                                         .setVisibility(Visibility.PUBLIC).setFinal(true)
                                         .setName(toCamelCase("set " + prop.name()))
                                         .setReturnType(formatFqn(classifier))
-                                        .setBody("super.set(" + prop.name().toUpperCase() + ", " + prop.name().toUpperCase()
-                                            + "_TYPE,value);\nreturn this;"
+                                        .setBody("super.setAt(" + prop.name().toUpperCase() + "_H, " + prop.name().toUpperCase()
+                                            + "_TYPE,value);\n" + indexMarker + "return this;"
                                         )
                                         .addParameter(typeToClassName(prop.type()), "value");
 
-                                if(prop.indexes().length > 0) {
-                                    if(indexedProperties == null) {
-                                        indexedProperties = new StringBuilder();
-                                        indexName = prop.indexes()[0].fqn().toUpperCase();
-                                    } else {
-                                        indexedProperties.append(",");
-                                    }
-
-                                    indexedProperties.append(prop.name().toUpperCase());
-
+                                String primitiveType = typeToPrimitiveName(prop.type());
+                                if (primitiveType != null) {
+                                    //generate primitive accessors, unset attributes are reported explicitly
+                                    //the node state only stores objects: setAt still boxes and getAt returns the box,
+                                    //these overloads only spare callers the boxing, casts and null checks
+                                    String suffix = "As" + primitiveType.substring(0, 1).toUpperCase() + primitiveType.substring(1);
+
+                                    javaClass.addMethod()
+                                            .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                            .setName(toCamelCase("has " + prop.name()))
+                                            .setReturnType(boolean.class)
+                                            .setBody("return super.getAt(" + prop.name().toUpperCase() + "_H) != null;");
+
+                                    javaClass.addMethod()
+                                            .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                            .setName(toCamelCase("get " + prop.name()) + suffix)
+                                            .setReturnType(primitiveType)
+                                            .setBody("final Object value = super.getAt(" + prop.name().toUpperCase() + "_H);\n" +
+                                                    "if (value == null) {\n" +
+                                                    "throw new IllegalStateException(\"Attribute " + prop.name() + " is not set\");\n" +
+                                                    "}\n" +
+                                                    "return ((" + typeToClassName(prop.type()) + ") value)." + primitiveType + "Value();");
+
+                                    javaClass.addMethod()
+                                            .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                            .setName(toCamelCase("get " + prop.name()) + suffix)
+                                            .setReturnType(primitiveType)
+                                            .setBody("final Object value = super.getAt(" + prop.name().toUpperCase() + "_H);\n" +
+                                                    "if (value == null) {\n" +
+                                                    "return defaultValue;\n" +
+                                                    "}\n" +
+                                                    "return ((" + typeToClassName(prop.type()) + ") value)." + primitiveType + "Value();")
+                                            .addParameter(primitiveType, "defaultValue");
+
+                                    javaClass.addMethod()
+                                            .setVisibility(Visibility.PUBLIC).setFinal(true)
+                                            .setName(toCamelCase("set " + prop.name()))
+                                            .setReturnType(formatFqn(classifier))
+                                            .setBody("super.setAt(" + prop.name().toUpperCase() + "_H, " + prop.name().toUpperCase()
+                                                    + "_TYPE,value);\n" + indexMarker + "return this;"
+                                            )
+                                            .addParameter(primitiveType, "value");
                                 }
 
                             }
@@ -339,26 +798,91 @@ public class Generator {
                     }
                 }
 
-                if(indexedProperties != null) {
-                    javaClass.addMethod()
+                if (monitored) {
+                    //monitored attributes live in a sub-node, so their writes do not create timepoints of this node
+                    javaClass.addField()
+                            .setVisibility(Visibility.PRIVATE)
+                            .setFinal(true)
+                            .setStatic(true)
+                            .setName("MONITOR_H")
+                            .setType(int.class)
+                            .setLiteralInitializer("greycat.utility.HashHelper.hash(\"_monitor\")");
+
+                    MethodSource<JavaClassSource> monitor = javaClass.addMethod()
+                            .setVisibility(Visibility.PRIVATE)
+                            .setName("monitor")
+                            .setReturnTypeVoid()
+                            .setBody("final Object id = super.getAt(MONITOR_H);\n" +
+                                    "if (id != null) {\n" +
+                                    "this.graph().lookup(this.world(), this.time(), (Long) id, callback);\n" +
+                                    "} else if (create) {\n" +
+                                    "final greycat.Node monitor = this.graph().newNode(this.world(), this.time());\n" +
+                                    "super.setAt(MONITOR_H, Type.LONG, monitor.id());\n" +
+                                    "callback.on(monitor);\n" +
+                                    "} else {\n" +
+                                    "callback.on(null);\n" +
+                                    "}");
+                    monitor.addParameter("boolean", "create").setFinal(true);
+                    monitor.addParameter("greycat.Callback<greycat.Node>", "callback").setFinal(true);
+                }
+
+                //writes made without the generated setters, through the task API for instance, report here
+                //the derived values of this class depending on the attribute are dropped here, its ancestors drop theirs
+                StringBuilder changeHook = new StringBuilder();
+                Map<String, Set<String>> ownDependents = dependents.get(loopClass.fqn());
+                Set<String> hooked = new HashSet<String>();
+                for (Property prop : loopClass.properties()) {
+                    boolean hasDependents = ownDependents != null && ownDependents.containsKey(prop.name());
+                    if (prop instanceof Attribute && !prop.derived() && !prop.learned() && !prop.getMonitorSeparation()
+                            && (prop.indexes().length > 0 || hasDependents)) {
+                        hooked.add(prop.name());
+                        changeHook.append("if (hash == ").append(prop.name().toUpperCase()).append("_H) {\n")
+                                .append(indexMarker(prop, name))
+                                .append(hasDependents ? derivedMarker(javaClass, loopClass, prop.name()) : "")
+                                .append("return;\n}\n");
+                    }
+                }
+                if (ownDependents != null) {
+                    for (String dependency : ownDependents.keySet()) {
+                        if (hooked.add(dependency)) {
+                            changeHook.append("if (hash == ").append(dependency.toUpperCase()).append("_H) {\n")
+                                    .append(derivedMarker(javaClass, loopClass, dependency))
+                                    .append("return;\n}\n");
+                        }
+                    }
+                }
+                if (loopClass.parent() == null || changeHook.length() > 0) {
+                    MethodSource<JavaClassSource> changed = javaClass.addMethod()
+                            .setName("internal_changed")
+                            .setVisibility(Visibility.PUBLIC)
+                            .setReturnTypeVoid()
+                            .setBody((loopClass.parent() == null ? "" : "super.internal_changed(hash);\n") + changeHook);
+                    changed.addParameter(int.class, "hash");
+                    changed.addAnnotation(Override.class);
+                }
+
+                if(indexed) {
+                    //non-blocking, touches the indexes this node is dirty for, a no-op when it is dirty for none
+                    MethodSource<JavaClassSource> indexMethod = javaClass.addMethod()
                             .setName("index" + classifier.name())
                             .setVisibility(Visibility.PUBLIC)
                             .setFinal(true)
                             .setReturnTypeVoid()
-                            .setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
-                                    "\t\tfinal " + classifier.name() +" self = this;\n" +
-                                    "\t\tthis.graph().index(world(), time(), " + name + "Model.IDX_" + indexName + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
-                                    "\t\t\t@Override\n" +
-                                    "\t\t\tpublic void on(greycat.NodeIndex indexNode) {\n" +
-                                    "\t\t\t\tindexNode.removeFromIndex(self, " + indexedProperties +" );\n" +
-                                    "\t\t\t\tindexNode.addToIndex(self," + indexedProperties +");\n" +
-                                    "\t\t\t\twaiter.count();\n" +
+                            .setBody("if (_indexQueue == null) {\n" +
+                                    "\t\t\tif (callback != null) {\n" +
+                                    "\t\t\t\tcallback.on(false);\n" +
                                     "\t\t\t}\n" +
-                                    "\t\t});\n" +
-                                    "\t\twaiter.waitResult();");
+                                    "\t\t\treturn;\n" +
+                                    "\t\t}\n" +
+                                    "\t\t_indexQueue.flush(this, callback);");
+                    indexMethod.addParameter("greycat.Callback<Boolean>", "callback");
+                    indexMethod.getJavaDoc().setFullText("Updates the indexes this node was marked dirty for by the setters, the task API"
+                            + " or internal_changed, and calls back once they are. A node marked dirty for none is left as it is.\n"
+                            + "Writes made with the plain node API, set or setAt, do not mark the node: call internal_changed"
+                            + " with the hash of each attribute written that way first.");
                 }
 
-                sources.add(javaClass);
+                addSource(javaClass, classifier);
 
             }
         }
@@ -376,6 +900,28 @@ public class Generator {
         }
         pluginClass.addInterface("greycat.plugin.Plugin");
 
+        if (usesIndexes) {
+            pluginClass.addField().setName("indexQueue").setVisibility(Visibility.PRIVATE).setType(name + "IndexQueue");
+
+            pluginClass.addMethod()
+                    .setName("indexQueue")
+                    .setVisibility(Visibility.PUBLIC)
+                    .setFinal(true)
+                    .setReturnType(name + "IndexQueue")
+                    .setBody("return indexQueue;");
+        }
+
+        if (usesDerived) {
+            pluginClass.addField().setName("derivedCache").setVisibility(Visibility.PRIVATE).setType(name + "DerivedCache");
+
+            pluginClass.addMethod()
+                    .setName("derivedCache")
+                    .setVisibility(Visibility.PUBLIC)
+                    .setFinal(true)
+                    .setReturnType(name + "DerivedCache")
+                    .setBody("return derivedCache;");
+        }
+
         pluginClass.addMethod().setReturnTypeVoid()
                 .setVisibility(Visibility.PUBLIC)
                 .setName("stop")
@@ -383,6 +929,12 @@ public class Generator {
                 .addAnnotation(Override.class);
 
         StringBuilder startBodyBuilder = new StringBuilder();
+        if (usesIndexes) {
+            startBodyBuilder.append("\t\tindexQueue = new ").append(name).append("IndexQueue(graph);\n");
+        }
+        if (usesDerived) {
+            startBodyBuilder.append("\t\tderivedCache = new ").append(name).append("DerivedCache(").append(name).append("DerivedCache.DEFAULT_CAPACITY);\n");
+        }
         for (Classifier classifier : model.classifiers()) {
             if (classifier instanceof Class) {
                 String fqn = formatFqn(classifier);
@@ -391,13 +943,39 @@ public class Generator {
                         .append("\t\t\t.setFactory(new NodeFactory() {\n" +
                                 "\t\t\t\t\t@Override\n" +
                                 "\t\t\t\t\tpublic greycat.Node create(long world, long time, long id, Graph graph) {\n" +
-                                "\t\t\t\t\t\treturn new ").append(fqn).append("(world,time,id,graph);\n" +
+                                "\t\t\t\t\t\t").append(fqn).append(" node = new ").append(fqn).append("(world,time,id,graph);\n")
+                        .append(usesIndexes ? "\t\t\t\t\t\tnode.internal_setIndexQueue(indexQueue);\n" : "")
+                        .append(usesDerived ? "\t\t\t\t\t\tnode.internal_setDerivedCache(derivedCache);\n" : "")
+                        .append("\t\t\t\t\t\treturn node;\n" +
                                 "\t\t\t\t\t}\n" +
                                 "\t\t\t\t});\n");
 
             }
         }
 
+        //the task API actions, declared so that serialized tasks using them can be read back
+        String taskPackage = name.contains(".") ? name.substring(0, name.lastIndexOf('.')).toLowerCase() + ".task" : "task";
+        startBodyBuilder.append("\t\tgraph.actionRegistry()\n")
+                .append("\t\t\t.getOrCreateDeclaration(").append(taskPackage).append(".ActionSetAttributeAt.NAME)\n")
+                .append("\t\t\t.setParams(greycat.Type.INT, greycat.Type.STRING, greycat.Type.STRING)\n")
+                .append("\t\t\t.setDescription(\"Sets an attribute, given by the hash of its name, on the nodes of the current result\")\n")
+                .append("\t\t\t.setFactory(new greycat.plugin.ActionFactory() {\n" +
+                        "\t\t\t\t\t@Override\n" +
+                        "\t\t\t\t\tpublic greycat.Action create(Object[] params) {\n" +
+                        "\t\t\t\t\t\treturn new ").append(taskPackage).append(".ActionSetAttributeAt((Integer) params[0], greycat.Type.typeFromName((String) params[1]), (String) params[2]);\n" +
+                        "\t\t\t\t\t}\n" +
+                        "\t\t\t\t});\n");
+        startBodyBuilder.append("\t\tgraph.actionRegistry()\n")
+                .append("\t\t\t.getOrCreateDeclaration(").append(taskPackage).append(".ActionAttributeAt.NAME)\n")
+                .append("\t\t\t.setParams(greycat.Type.INT)\n")
+                .append("\t\t\t.setDescription(\"Gets an attribute, given by the hash of its name, from the nodes of the current result\")\n")
+                .append("\t\t\t.setFactory(new greycat.plugin.ActionFactory() {\n" +
+                        "\t\t\t\t\t@Override\n" +
+                        "\t\t\t\t\tpublic greycat.Action create(Object[] params) {\n" +
+                        "\t\t\t\t\t\treturn new ").append(taskPackage).append(".ActionAttributeAt((Integer) params[0]);\n" +
+                        "\t\t\t\t\t}\n" +
+                        "\t\t\t\t});\n");
+
         MethodSource<JavaClassSource> startMethod = pluginClass.addMethod();
         startMethod.setReturnTypeVoid()
                 .setVisibility(Visibility.PUBLIC)
@@ -417,6 +995,7 @@ public class Generator {
             modelClass.setName(name + "Model");
         }
         modelClass.addField().setName("_graph").setVisibility(Visibility.PRIVATE).setType(Graph.class).setFinal(true);
+        modelClass.addField().setName("_plugin").setVisibility(Visibility.PRIVATE).setType(name + "Plugin").setFinal(true);
 
         modelClass.addField().setName("PLANNED_WORLD").setVisibility(Visibility.PUBLIC).setType("long").setStatic(true).setLiteralInitializer("greycat.Constants.NULL_LONG");
         modelClass.addField().setName("REAL_WORLD").setVisibility(Visibility.PUBLIC).setType("long").setStatic(true).setFinal(true).setLiteralInitializer("0");
@@ -429,7 +1008,7 @@ public class Generator {
                         .setVisibility(Visibility.PUBLIC)
                         .setStatic(true)
                         .setFinal(true)
-                        .setName("IDX_" + index.name().toUpperCase())
+                        .setName(indexConstant(index))
                         .setType(String.class)
                         .setStringInitializer(index.name());
             }
@@ -438,9 +1017,11 @@ public class Generator {
         MethodSource<JavaClassSource> modelConstructor = modelClass.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC);
         modelConstructor.addParameter(GraphBuilder.class, "builder");
         if (useML) {
-            modelConstructor.setBody("this._graph = builder.withPlugin(new MLPlugin()).withPlugin(new " + name + "Plugin()).build();");
+            modelConstructor.setBody("this._plugin = new " + name + "Plugin();\n" +
+                    "this._graph = builder.withPlugin(new greycat.ml.MLPlugin()).withPlugin(this._plugin).build();");
         } else {
-            modelConstructor.setBody("this._graph = builder.withPlugin(new " + name + "Plugin()).build();");
+            modelConstructor.setBody("this._plugin = new " + name + "Plugin();\n" +
+                    "this._graph = builder.withPlugin(this._plugin).build();");
         }
         modelClass.addMethod().setName("graph").setBody("return this._graph;").setVisibility(Visibility.PUBLIC).setFinal(true).setReturnType(Graph.class);
 
@@ -453,6 +1034,18 @@ public class Generator {
                 .setStatic(true)
                 .setReturnType("long");
 
+        //Accessors use precomputed hashes, so the names are registered once in the dictionary
+        StringBuilder dictionaryBuilder = new StringBuilder();
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Class) {
+                for (Property prop : ((Class) classifier).properties()) {
+                    dictionaryBuilder.append("\t\t\t\t_graph.resolver().stringToHash(")
+                            .append(formatFqn(classifier)).append(".").append(prop.name().toUpperCase())
+                            .append(", true);\n");
+                }
+            }
+        }
+
         //Connect method
         modelClass.addImport(Callback.class);
         modelClass
@@ -464,6 +1057,7 @@ public class Generator {
                         "\t\t\t\tif(PLANNED_WORLD == greycat.Constants.NULL_LONG) {\n" +
                         "\t\t\t\t    PLANNED_WORLD = graph().fork(REAL_WORLD);\n" +
                         "                }\n" +
+                        dictionaryBuilder +
                         "                callback.on(result);\n" +
                         "\t\t\t}\n" +
                         "\t\t});")
@@ -482,11 +1076,26 @@ public class Generator {
                 .setReturnTypeVoid()
                 .addParameter("greycat.Callback<Boolean>", "callback");
 
-        //save method
+        //flush indexes method
+        modelClass
+                .addMethod()
+                .setName("flushIndexes")
+                .setBody(usesIndexes ? "_plugin.indexQueue().flush(callback);" : "if (callback != null) {\n\t\t\tcallback.on(true);\n\t\t}")
+                .setVisibility(Visibility.PUBLIC)
+                .setFinal(true)
+                .setReturnTypeVoid()
+                .addParameter("greycat.Callback<Boolean>", "callback");
+
+        //save method, pending index updates are flushed first
         modelClass
                 .addMethod()
                 .setName("save")
-                .setBody("_graph.save(callback);")
+                .setBody(!usesIndexes ? "_graph.save(callback);" : "_plugin.indexQueue().flush(new greycat.Callback<Boolean>() {\n" +
+                        "\t\t\t@Override\n" +
+                        "\t\t\tpublic void on(Boolean result) {\n" +
+                        "\t\t\t\t_graph.save(callback);\n" +
+                        "\t\t\t}\n" +
+                        "\t\t});")
                 .setVisibility(Visibility.PUBLIC)
                 .setFinal(true)
                 .setReturnTypeVoid()
@@ -501,11 +1110,35 @@ public class Generator {
                 loopNewMethod.addParameter("long", "world");
                 loopNewMethod.addParameter("long", "time");
                 loopNewMethod.setBody("return (" + formatFqn(classifier) + ")this._graph.newTypedNode(world,time," + formatFqn(classifier) + ".NODE_NAME);");
+
+                //bulk creation, a convenience: the graph allocates nodes one at a time, the import is the fast path for large loads
+                MethodSource<JavaClassSource> loopNewBatchMethod = modelClass.addMethod().setName(toCamelCase("new " + classifier.name()) + "Batch");
+                loopNewBatchMethod.setVisibility(Visibility.PUBLIC).setFinal(true);
+                loopNewBatchMethod.setReturnType(formatFqn(classifier) + "[]");
+                loopNewBatchMethod.addParameter("long", "world");
+                loopNewBatchMethod.addParameter("long", "time");
+                loopNewBatchMethod.addParameter("int", "count");
+                loopNewBatchMethod.setBody("final " + formatFqn(classifier) + "[] result = new " + formatFqn(classifier) + "[count];\n" +
+                        "for (int i = 0; i < count; i++) {\n" +
+                        "    result[i] = (" + formatFqn(classifier) + ")this._graph.newTypedNode(world,time," + formatFqn(classifier) + ".NODE_NAME);\n" +
+                        "}\n" +
+                        "return result;");
+
+                //streaming import: each chunk is indexed in one pass per index and saved, then its nodes are freed
+                if (affected == null || affected.contains(classifier.fqn())) {
+                    addSource(generateRow((Class) classifier), classifier);
+                }
+                generateImport(modelClass, (Class) classifier, name);
             }
             if (classifier instanceof Index) {
                 Index casted = (Index) classifier;
                 String resultType = formatFqn(casted.type());
 
+                if (casted.ordered()) {
+                    generateOrderedFinders(modelClass, casted, name);
+                    continue;
+                }
+
                 MethodSource<JavaClassSource> loopFindMethod = modelClass.addMethod().setName(toCamelCase("find " + classifier.name()));
                 loopFindMethod.setVisibility(Visibility.PUBLIC).setFinal(true);
                 loopFindMethod.setReturnTypeVoid();
@@ -514,7 +1147,7 @@ public class Generator {
                 loopFindMethod.addParameter("String", "query");
                 loopFindMethod.addParameter("greycat.Callback<" + resultType + "[]>","callback");
                 loopFindMethod.setBody(
-                        "       this._graph.indexIfExists(world, time, IDX_" + casted.fqn().toUpperCase() + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
+                        "       this._graph.indexIfExists(world, time, " + indexConstant(casted) + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
                         "           @Override\n" +
                         "           public void on(greycat.NodeIndex index) {\n" +
                         "               if(index != null) {\n" +
@@ -540,7 +1173,7 @@ public class Generator {
                 loopFindAllMethod.addParameter("long", "time");
                 loopFindAllMethod.addParameter("greycat.Callback<" + resultType + "[]>","callback");
                 loopFindAllMethod.setBody(
-                        "       this._graph.indexIfExists(world, time, IDX_" + casted.fqn().toUpperCase() + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
+                        "       this._graph.indexIfExists(world, time, " + indexConstant(casted) + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
                                 "           @Override\n" +
                                 "           public void on(greycat.NodeIndex index) {\n" +
                                 "               if(index != null) {\n" +
@@ -558,12 +1191,92 @@ public class Generator {
                                 "           }\n" +
                                 "       });"
                 );
+
+                //typed finder, the keys are added to the query as they are, no query string is built nor parsed
+                //the nodes found are wrapped as they are, not copied, all of them are instances of the indexed class
+                String nodesType = name + "Nodes<" + resultType + ">";
+                Property[] keys = casted.properties();
+                StringBuilder finderName = new StringBuilder("find")
+                        .append(classifier.name().substring(0, 1).toUpperCase())
+                        .append(classifier.name().substring(1))
+                        .append("By");
+                StringBuilder queryBuilder = new StringBuilder();
+                queryBuilder.append("final greycat.Query query = this._graph.newQuery();\n")
+                        .append("query.setWorld(index.world());\n")
+                        .append("query.setTime(index.time());\n");
+                StringBuilder arguments = new StringBuilder();
+                for (int i = 0; i < keys.length; i++) {
+                    if (i > 0) {
+                        finderName.append("And");
+                    }
+                    finderName.append(keys[i].name().substring(0, 1).toUpperCase()).append(keys[i].name().substring(1));
+                    queryBuilder.append("query.add(").append(resultType).append(".").append(keys[i].name().toUpperCase())
+                            .append(", ").append(keyValue(keys[i])).append(");\n");
+                    arguments.append(keyParameter(keys[i])).append(", ");
+                }
+
+                //on an index resolved once by the caller, for a series of lookups at the same world and time
+                MethodSource<JavaClassSource> resolvedFinder = modelClass.addMethod().setName(finderName.toString());
+                resolvedFinder.setVisibility(Visibility.PUBLIC).setFinal(true);
+                resolvedFinder.setReturnTypeVoid();
+                resolvedFinder.addParameter("greycat.NodeIndex", "index");
+                for (Property key : keys) {
+                    resolvedFinder.addParameter(typeToClassName(key.type()), keyParameter(key));
+                }
+                resolvedFinder.addParameter("greycat.Callback<" + nodesType + ">", "callback").setFinal(true);
+                resolvedFinder.setBody(queryBuilder + "index.findByQuery(query, new greycat.Callback<greycat.Node[]>() {\n" +
+                        "@Override\n" +
+                        "public void on(greycat.Node[] nodes) {\n" +
+                        "callback.on(new " + nodesType + "(nodes));\n" +
+                        "}\n" +
+                        "});");
+                resolvedFinder.getJavaDoc().setFullText("Nodes of " + classifier.name() + " matching the keys, in an index resolved once by the caller:"
+                        + " the fast path for a series of lookups at the same world and time.");
+
+                MethodSource<JavaClassSource> typedFinder = modelClass.addMethod().setName(finderName.toString());
+                typedFinder.setVisibility(Visibility.PUBLIC).setFinal(true);
+                typedFinder.setReturnTypeVoid();
+                typedFinder.addParameter("long", "world");
+                typedFinder.addParameter("long", "time");
+                for (Property key : keys) {
+                    typedFinder.addParameter(typeToClassName(key.type()), keyParameter(key)).setFinal(true);
+                }
+                typedFinder.addParameter("greycat.Callback<" + nodesType + ">", "callback").setFinal(true);
+                typedFinder.getJavaDoc().setFullText("Nodes of " + classifier.name() + " matching the keys at world and time."
+                        + " The index is resolved on each call, lookups repeated at the same world and time should resolve it once"
+                        + " and use the overload taking the index.");
+                typedFinder.setBody("this._graph.indexIfExists(world, time, " + indexConstant(casted) + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
+                        "@Override\n" +
+                        "public void on(greycat.NodeIndex index) {\n" +
+                        "if (index == null) {\n" +
+                        "callback.on(new " + nodesType + "(new greycat.Node[0]));\n" +
+                        "return;\n" +
+                        "}\n" +
+                        finderName + "(index, " + arguments + "callback);\n" +
+                        "}\n" +
+                        "});");
             }
         }
 
 
         sources.add(modelClass);
 
+        //Generate index queue
+        if (usesIndexes) {
+            sources.add(generateIndexQueue(name));
+        }
+        if (usesOrdered) {
+            sources.add(generateOrderedIndex(name));
+        }
+        sources.add(generateChangeHook(name));
+        if (usesFinders) {
+            sources.add(generateNodes(name));
+        }
+        if (usesDerived) {
+            sources.add(generateDerivedCache(name));
+            sources.add(generateDerivedFunction(name));
+        }
+
 
         // Generate Task API
         final JavaClassSource taskAPI = Roaster.create(JavaClassSource.class);
@@ -590,6 +1303,16 @@ public class Generator {
                 .setReturnType("greycat.Action");
 
 
+        //number of unordered indexes per indexed class, counted once for all the indexes
+        Map<String, Integer> indexesPerType = new TreeMap<String, Integer>();
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Index && !((Index) classifier).ordered()) {
+                String type = ((Index) classifier).type().fqn();
+                Integer count = indexesPerType.get(type);
+                indexesPerType.put(type, count == null ? 1 : count + 1);
+            }
+        }
+
         for(Classifier classifier: model.classifiers()) {
             if(classifier instanceof Class) {
                 taskAPI.addMethod()
@@ -600,29 +1323,35 @@ public class Generator {
                         .setBody("return greycat.internal.task.CoreActions.createTypedNode("+ formatFqn(classifier) + ".NODE_NAME);");
 
                 for(Property property : ((Class) classifier).properties()) {
-                    if(property instanceof Attribute) {
-                        taskAPI.addMethod()
+                    //derived attributes are not stored and algorithm-backed ones live in their model node, there is nothing to read or write for a task
+                    if(property instanceof Attribute && !property.getMonitorSeparation() && !property.derived() && algorithmOf(property) == null) {
+                        //structures are edited in place, not set from a string
+                        if (!isStruct(property.type()) && !isTimeseries(property)) {
+                            taskAPI.addMethod()
                                 .setName("set" + classifier.name() + property.name().substring(0,1).toUpperCase() + property.name().substring(1))
                                 .setReturnType("greycat.Action")
                                 .setVisibility(Visibility.PUBLIC)
                                 .setStatic(true)
-                                .setBody("return greycat.internal.task.CoreActions.setAttribute("+ formatFqn(classifier) + "." + property.name().toUpperCase()+"," + formatFqn(classifier) +"." + property.name().toUpperCase() + "_TYPE," + property.name() + " + \"\");")
+                                .setBody("return new ActionSetAttributeAt("+ formatFqn(classifier) + "." + property.name().toUpperCase()+"_H," + formatFqn(classifier) +"." + property.name().toUpperCase() + "_TYPE," + property.name() + " + \"\");")
                                 .addParameter(String.class,property.name());
+                        }
 
                         taskAPI.addMethod()
                                 .setName("get" + classifier.name() + property.name().substring(0,1).toUpperCase() + property.name().substring(1))
                                 .setReturnType("greycat.Action")
                                 .setVisibility(Visibility.PUBLIC)
                                 .setStatic(true)
-                                .setBody("return greycat.internal.task.CoreActions.attribute(" + formatFqn(classifier) + "." + property.name().toUpperCase() +");");
-                    } else if(property instanceof Relation) {
-                        taskAPI.addMethod()
+                                .setBody("return new ActionAttributeAt(" + formatFqn(classifier) + "." + property.name().toUpperCase() +"_H);");
+                    } else if(property instanceof Relation && ((Relation) property).upper() != 1) {
+                        if (((Relation) property).indexedBy().length == 0) {
+                            taskAPI.addMethod()
                                 .setName("addTo" + classifier.name() + property.name().substring(0,1).toUpperCase() + property.name().substring(1))
                                 .setReturnType("greycat.Action")
                                 .setVisibility(Visibility.PUBLIC)
                                 .setStatic(true)
                                 .setBody("return greycat.internal.task.CoreActions.addVarToRelation(" + formatFqn(classifier) +"." + property.name().toUpperCase() + ",varName);")
                                 .addParameter("String","varName");
+                        }
 
                         taskAPI.addMethod()
                                 .setName("traverse" + classifier.name() + property.name().substring(0,1).toUpperCase() + property.name().substring(1))
@@ -659,19 +1388,26 @@ public class Generator {
 
 
 
-                sources.add(functionSelect);
+                if (affected == null || affected.contains(classifier.fqn())) {
+                    addSource(functionSelect, classifier);
+                }
 
 
 
 
 
-            } else if(classifier instanceof Index) {
+            } else if(classifier instanceof Index && !((Index) classifier).ordered()) {
+                //classes in several indexes get one action per index, suffixed by the index name
+                String suffix = "";
+                if (indexesPerType.get(((Index) classifier).type().fqn()) > 1) {
+                    suffix = "In" + classifier.name().substring(0, 1).toUpperCase() + classifier.name().substring(1);
+                }
                 taskAPI.addMethod()
-                        .setName("findAll" + ((Index)classifier).type().name() + "s")
+                        .setName("findAll" + ((Index)classifier).type().name() + "s" + suffix)
                         .setReturnType("greycat.Action")
                         .setVisibility(Visibility.PUBLIC)
                         .setStatic(true)
-                        .setBody("return greycat.internal.task.CoreActions.readGlobalIndex(" + name +"Model.IDX_" + classifier.name().toUpperCase() +");");
+                        .setBody("return greycat.internal.task.CoreActions.readGlobalIndex(" + name + "Model." + indexConstant((Index) classifier) + ");");
 
                 StringBuilder indexedProperties = new StringBuilder();
                 Property[] properties = ((Index)classifier).properties();
@@ -685,11 +1421,11 @@ public class Generator {
                     }
                 }
                 taskAPI.addMethod()
-                        .setName("index" + ((Index)classifier).type().name())
+                        .setName("index" + ((Index)classifier).type().name() + suffix)
                         .setReturnType("greycat.Action")
                         .setVisibility(Visibility.PUBLIC)
                         .setStatic(true)
-                        .setBody("return greycat.internal.task.CoreActions.addToGlobalIndex(" + name+ "Model.IDX_" + classifier.name().toUpperCase()+", " + indexedProperties + ");");
+                        .setBody("return greycat.internal.task.CoreActions.addToGlobalIndex(" + name + "Model." + indexConstant((Index) classifier) + ", " + indexedProperties + ");");
 
             }
         }
@@ -700,7 +1436,9 @@ public class Generator {
                 .setStatic(true)
                 .setFinal(true)
                 .setReturnType(Action.class)
-                .setBody("return new ActionResolvedInOtherWorld(true);");
+                .setBody("return new ActionResolvedInOtherWorld(true);")
+                .getJavaDoc().setFullText("Resolves the nodes of the current result in the planned world, nodes missing there become null"
+                        + " at their position.");
 
         taskAPI.addMethod()
                 .setName("getRealVersionNode")
@@ -708,7 +1446,9 @@ public class Generator {
                 .setStatic(true)
                 .setFinal(true)
                 .setReturnType(Action.class)
-                .setBody("return new ActionResolvedInOtherWorld(false);");
+                .setBody("return new ActionResolvedInOtherWorld(false);")
+                .getJavaDoc().setFullText("Resolves the nodes of the current result in the real world, nodes missing there become null"
+                        + " at their position.");
 
         sources.add(taskAPI);
 
@@ -722,6 +1462,11 @@ public class Generator {
             actionResolvedPW.setName("ActionResolvedInOtherWorld");
         }
 
+        actionResolvedPW.getJavaDoc().setFullText("Resolves the nodes of the current result in the planned or the real world, at the"
+                + " time of the context. The other elements of the result are kept as they are.\n"
+                + "The result keeps the size and the order of the previous one: a node that cannot be resolved in the other"
+                + " world, created after the fork for instance, is replaced by null at its position.");
+
         actionResolvedPW.addField()
                 .setName("getPlanned")
                 .setVisibility(Visibility.PRIVATE)
@@ -736,13 +1481,10 @@ public class Generator {
 
         actionResolvedPW.addImport(Action.class);
         actionResolvedPW.addImport(Callback.class);
-        actionResolvedPW.addImport(DeferCounter.class);
         actionResolvedPW.addImport(Node.class);
         actionResolvedPW.addImport(TaskContext.class);
         actionResolvedPW.addImport(TaskResult.class);
         actionResolvedPW.addImport(BaseNode.class);
-        actionResolvedPW.addImport(CoreDeferCounter.class);
-        actionResolvedPW.addImport(Job.class);
         actionResolvedPW.addImport(Buffer.class);
 
         actionResolvedPW.addInterface(Action.class);
@@ -751,32 +1493,38 @@ public class Generator {
                 .setName("eval")
                 .setVisibility(Visibility.PUBLIC)
                 .setBody("final TaskResult previous = ctx.result();\n" +
-                        "        final TaskResult newRes = ctx.newResult();\n" +
-                        "        final long[] ids = new long[previous.size()];\n" +
+                        "        final int size = previous.size();\n" +
                         "        int nbElements = 0;\n" +
-                        "\n" +
-                        "        for(int i=0;i<previous.size();i++) {\n" +
+                        "        for(int i=0;i<size;i++) {\n" +
                         "            if(previous.get(i) instanceof BaseNode) {\n" +
                         "                nbElements++;\n" +
-                        "                ids[i] = ((BaseNode) previous.get(i)).id();\n" +
                         "            }\n" +
                         "        }\n" +
                         "\n" +
-                        "        final DeferCounter counter = new CoreDeferCounter(nbElements);\n" +
-                        "        final long world = (getPlanned)? " + name + "Model.PLANNED_WORLD : "+ name + "Model.REAL_WORLD;\n" +
-                        "        for(int i=0;i<nbElements;i++) {\n" +
-                        "            ctx.graph().lookup(world, ctx.time(), ids[i], new Callback<Node>() {\n" +
-                        "                @Override\n" +
-                        "                public void on(Node result) {\n" +
-                        "                    newRes.add(result);\n" +
-                        "                    counter.count();\n" +
-                        "                }\n" +
-                        "            });\n" +
+                        "        final long[] ids = new long[nbElements];\n" +
+                        "        int cursor = 0;\n" +
+                        "        for(int i=0;i<size;i++) {\n" +
+                        "            final Object loop = previous.get(i);\n" +
+                        "            if(loop instanceof BaseNode) {\n" +
+                        "                ids[cursor++] = ((BaseNode) loop).id();\n" +
+                        "            }\n" +
                         "        }\n" +
                         "\n" +
-                        "        counter.then(new Job() {\n" +
+                        "        final long world = (getPlanned)? " + name + "Model.PLANNED_WORLD : "+ name + "Model.REAL_WORLD;\n" +
+                        "        ctx.graph().lookupAll(world, ctx.time(), ids, new Callback<Node[]>() {\n" +
                         "            @Override\n" +
-                        "            public void run() {\n" +
+                        "            public void on(Node[] resolved) {\n" +
+                        "                final TaskResult newRes = ctx.newResult();\n" +
+                        "                int next = 0;\n" +
+                        "                for(int i=0;i<size;i++) {\n" +
+                        "                    final Object loop = previous.get(i);\n" +
+                        "                    if(loop instanceof BaseNode) {\n" +
+                        "                        //null when the node does not exist in the other world yet, the positions are kept\n" +
+                        "                        newRes.add(resolved[next++]);\n" +
+                        "                    } else {\n" +
+                        "                        newRes.add(loop);\n" +
+                        "                    }\n" +
+                        "                }\n" +
                         "                ctx.continueWith(newRes);\n" +
                         "            }\n" +
                         "        });");
@@ -792,6 +1540,158 @@ public class Generator {
 
         sources.add(actionResolvedPW);
 
+        // Generate ActionSetAttributeAt
+        final JavaClassSource actionSetAt = Roaster.create(JavaClassSource.class);
+        actionSetAt.setPackage(taskAPI.getPackage());
+        actionSetAt.setName("ActionSetAttributeAt");
+        actionSetAt.addInterface(Action.class);
+        actionSetAt.addImport(Buffer.class);
+        actionSetAt.addImport(TaskContext.class);
+        actionSetAt.addImport(TaskResult.class);
+        actionSetAt.addImport(Type.class);
+        actionSetAt.addImport(BaseNode.class);
+
+        String actionPrefix = name.substring(name.lastIndexOf('.') + 1);
+        actionPrefix = actionPrefix.substring(0, 1).toLowerCase() + actionPrefix.substring(1);
+
+        actionSetAt.addField().setName("NAME").setVisibility(Visibility.PUBLIC).setStatic(true).setFinal(true)
+                .setType(String.class).setStringInitializer(actionPrefix + "SetAttributeAt");
+        actionSetAt.addField().setName("hash").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        actionSetAt.addField().setName("type").setVisibility(Visibility.PRIVATE).setFinal(true).setType(byte.class);
+        actionSetAt.addField().setName("value").setVisibility(Visibility.PRIVATE).setFinal(true).setType(String.class);
+
+        MethodSource<JavaClassSource> setAtConstructor = actionSetAt.addMethod()
+                .setConstructor(true)
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("this.hash = p_hash;\n" +
+                        "this.type = p_type;\n" +
+                        "this.value = p_value;");
+        setAtConstructor.addParameter(int.class, "p_hash");
+        setAtConstructor.addParameter(byte.class, "p_type");
+        setAtConstructor.addParameter(String.class, "p_value");
+
+        MethodSource<JavaClassSource> setAtEval = actionSetAt.addMethod()
+                .setName("eval")
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("final TaskResult previous = ctx.result();\n" +
+                        "        final Object parsed = parse(ctx.template(value));\n" +
+                        "        for (int i = 0; i < previous.size(); i++) {\n" +
+                        "            final Object loop = previous.get(i);\n" +
+                        "            if (loop instanceof BaseNode) {\n" +
+                        "                ((BaseNode) loop).setAt(hash, type, parsed);\n" +
+                        "                if (loop instanceof " + name + "ChangeHook) {\n" +
+                        "                    ((" + name + "ChangeHook) loop).internal_changed(hash);\n" +
+                        "                }\n" +
+                        "            }\n" +
+                        "        }\n" +
+                        "        ctx.continueTask();");
+        setAtEval.addParameter(TaskContext.class, "ctx");
+        setAtEval.addAnnotation(Override.class);
+
+        actionSetAt.addMethod()
+                .setName("parse")
+                .setVisibility(Visibility.PRIVATE)
+                .setReturnType(Object.class)
+                .setBody("if (flat == null) {\n" +
+                        "            return null;\n" +
+                        "        }\n" +
+                        "        switch (type) {\n" +
+                        "            case Type.BOOL:\n" +
+                        "                return Boolean.parseBoolean(flat);\n" +
+                        "            case Type.INT:\n" +
+                        "                return Integer.parseInt(flat);\n" +
+                        "            case Type.LONG:\n" +
+                        "                return Long.parseLong(flat);\n" +
+                        "            case Type.DOUBLE:\n" +
+                        "                return Double.parseDouble(flat);\n" +
+                        "            default:\n" +
+                        "                return flat;\n" +
+                        "        }")
+                .addParameter(String.class, "flat");
+
+        MethodSource<JavaClassSource> setAtSerialize = actionSetAt.addMethod()
+                .setName("serialize")
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("builder.writeString(NAME);\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_OPEN);\n" +
+                        "        builder.writeString(String.valueOf(hash));\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_SEP);\n" +
+                        "        greycat.internal.task.TaskHelper.serializeType(type, builder);\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_SEP);\n" +
+                        "        greycat.internal.task.TaskHelper.serializeString(value, builder, true);\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_CLOSE);");
+        setAtSerialize.addParameter(Buffer.class, "builder");
+        setAtSerialize.addAnnotation(Override.class);
+
+        sources.add(actionSetAt);
+
+        // Generate ActionAttributeAt
+        final JavaClassSource actionAttributeAt = Roaster.create(JavaClassSource.class);
+        actionAttributeAt.setPackage(taskAPI.getPackage());
+        actionAttributeAt.setName("ActionAttributeAt");
+        actionAttributeAt.addInterface(Action.class);
+        actionAttributeAt.addImport(Buffer.class);
+        actionAttributeAt.addImport(TaskContext.class);
+        actionAttributeAt.addImport(TaskResult.class);
+        actionAttributeAt.addImport(BaseNode.class);
+
+        actionAttributeAt.addField().setName("NAME").setVisibility(Visibility.PUBLIC).setStatic(true).setFinal(true)
+                .setType(String.class).setStringInitializer(actionPrefix + "AttributeAt");
+        actionAttributeAt.addField().setName("hash").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+
+        actionAttributeAt.addMethod()
+                .setConstructor(true)
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("this.hash = p_hash;")
+                .addParameter(int.class, "p_hash");
+
+        MethodSource<JavaClassSource> attributeAtEval = actionAttributeAt.addMethod()
+                .setName("eval")
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("final TaskResult previous = ctx.result();\n" +
+                        "        final TaskResult next = ctx.newResult();\n" +
+                        "        for (int i = 0; i < previous.size(); i++) {\n" +
+                        "            final Object loop = previous.get(i);\n" +
+                        "            if (loop instanceof BaseNode) {\n" +
+                        "                final Object value = ((BaseNode) loop).getAt(hash);\n" +
+                        "                if (value != null) {\n" +
+                        "                    next.add(value);\n" +
+                        "                }\n" +
+                        "            }\n" +
+                        "        }\n" +
+                        "        ctx.continueWith(next);");
+        attributeAtEval.addParameter(TaskContext.class, "ctx");
+        attributeAtEval.addAnnotation(Override.class);
+
+        MethodSource<JavaClassSource> attributeAtSerialize = actionAttributeAt.addMethod()
+                .setName("serialize")
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("builder.writeString(NAME);\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_OPEN);\n" +
+                        "        builder.writeString(String.valueOf(hash));\n" +
+                        "        builder.writeChar(greycat.Constants.TASK_PARAM_CLOSE);");
+        attributeAtSerialize.addParameter(Buffer.class, "builder");
+        attributeAtSerialize.addAnnotation(Override.class);
+
+        sources.add(actionAttributeAt);
+
+        // Generate the series returned by the history accessors
+        for (String valueType : new String[]{"double", "long", "int", "boolean", "String"}) {
+            sources.add(generateSeries(timePackage(name), valueType));
+        }
+
+        // Generate the aggregation functions and their accumulator
+        sources.add(generateAggFn(timePackage(name)));
+        sources.add(generateAggregator(timePackage(name)));
+
+        // Generate the storage of the timeseries attributes
+        sources.add(generateTimeSeriesCodec(timePackage(name)));
+        sources.add(generateSampleCursor(timePackage(name)));
+
+        // Generate the micro-batching of the learned attributes
+        sources.add(generateLearningSink(timePackage(name)));
+        sources.add(generateLearningBuffer(timePackage(name)));
+
         // Generate Time Helper
         final JavaClassSource timeHelper = Roaster.create(JavaClassSource.class);
         if(name.contains(".")) {
@@ -947,66 +1847,2729 @@ public class Generator {
         prevDays.addParameter(int.class,"nb");
 
         sources.add(timeHelper);
+    }
 
+    private void addSource(JavaSource src, Classifier owner) {
+        sources.add(src);
+        owners.put(src, owner.fqn());
+    }
 
+    /**
+     * Writes the sources whose content changed, and deletes the files of the previous generation that are not
+     * generated anymore. Unchanged files keep their timestamp, so incremental compilers leave them alone.
+     * On a partial generation, only the files of the classifiers that were not re-emitted and are still declared are
+     * carried over from the previous manifest: the files of removed classifiers, and those an affected classifier no
+     * longer emits, are deleted as on a full generation.
+     * All the sources are attempted, those that failed are left out of the manifest, then the first failure is
+     * thrown.
+     */
+    public void write(File target, Set<String> affected) throws IOException {
+        Map<String, String> previous = readManifest(target);
+        Map<String, String> manifest = new TreeMap<String, String>();
+        if (affected != null) {
+            //files of the classifiers that were not re-emitted are still valid
+            for (Map.Entry<String, String> entry : previous.entrySet()) {
+                String owner = entry.getValue();
+                if (!owner.isEmpty() && !affected.contains(owner) && model.get(owner) != null) {
+                    manifest.put(entry.getKey(), owner);
+                }
+            }
+        }
 
-
-        //DEBUG print
+        IOException failure = null;
         for (JavaSource src : sources) {
-
-            File targetPkg;
+            String path;
             if (src.getPackage() != null) {
-                targetPkg = new File(target.getAbsolutePath() + File.separator + src.getPackage().replace(".", File.separator));
+                path = src.getPackage().replace(".", "/") + "/" + src.getName() + ".java";
             } else {
-                targetPkg = target;
+                path = src.getName() + ".java";
             }
-            targetPkg.mkdirs();
-            File targetSrc = new File(targetPkg, src.getName() + ".java");
+            String owner = owners.get(src);
             try {
-                FileWriter writer = new FileWriter(targetSrc);
-                writer.write(src.toString());
-                writer.close();
+                writeIfChanged(new File(target, path), src.toString());
+                manifest.put(path, owner == null ? "" : owner);
             } catch (IOException e) {
-                e.printStackTrace();
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        for (String path : previous.keySet()) {
+            if (!manifest.containsKey(path)) {
+                File stale = new File(target, path);
+                stale.delete();
+                File parent = stale.getParentFile();
+                while (parent != null && !parent.equals(target) && parent.delete()) {
+                    parent = parent.getParentFile();
+                }
             }
         }
 
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : manifest.entrySet()) {
+            builder.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        writeIfChanged(new File(target, MANIFEST), builder.toString());
+        if (failure != null) {
+            throw failure;
+        }
     }
 
-    private String toCamelCase(final String init) {
-        if (init == null) {
-            return null;
+    private static Map<String, String> readManifest(File target) throws IOException {
+        Map<String, String> result = new TreeMap<String, String>();
+        File manifest = new File(target, MANIFEST);
+        if (!manifest.exists()) {
+            return result;
         }
-        final StringBuilder ret = new StringBuilder(init.length());
-        boolean isFirst = true;
-        for (final String word : init.split(" ")) {
-            if (isFirst) {
-                ret.append(word);
-                isFirst = false;
-            } else {
-                if (!word.isEmpty()) {
-                    ret.append(word.substring(0, 1).toUpperCase());
-                    ret.append(word.substring(1).toLowerCase());
-                }
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            int separator = line.indexOf('\t');
+            if (separator != -1) {
+                result.put(line.substring(0, separator), line.substring(separator + 1));
             }
         }
-        return ret.toString();
+        return result;
     }
 
-    private static byte nameToType(final String name) {
-        switch (name) {
-            case "Integer":
-                return Type.INT;
-            case "Long":
-                return Type.LONG;
-            case "String":
-                return Type.STRING;
+    private static void writeIfChanged(File file, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        if (file.exists() && file.length() == bytes.length && Arrays.equals(Files.readAllBytes(file.toPath()), bytes)) {
+            return;
+        }
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes);
+    }
+
+    /**
+     * Streaming import of the rows of a class. A chunk of nodes is created and filled, written straight to the node
+     * state since new nodes have neither pending index updates nor memoized derived values. Each index of the class
+     * is then resolved once and receives the whole chunk, the graph is saved, and the nodes are freed. The chunks run
+     * in a loop that only moves on once the previous chunk is saved, resuming from the save callback when it
+     * completes asynchronously, so the stack does not grow with the number of chunks.
+     */
+    private void generateImport(JavaClassSource modelClass, Class clazz, String name) {
+        String nodeType = formatFqn(clazz);
+        String rowType = nodeType + "Row";
+        String importName = toCamelCase("import " + clazz.name());
+        String chunksName = importName + "Chunks";
+        String flushName = importName + "Flush";
+
+        MethodSource<JavaClassSource> importMethod = modelClass.addMethod().setName(importName);
+        importMethod.setVisibility(Visibility.PUBLIC).setFinal(true);
+        importMethod.setReturnTypeVoid();
+        importMethod.addParameter("long", "world");
+        importMethod.addParameter("long", "time");
+        importMethod.addParameter("java.util.Iterator<? extends " + rowType + ">", "rows");
+        importMethod.addParameter("int", "chunkSize");
+        importMethod.addParameter("greycat.Callback<Long>", "callback");
+        importMethod.setBody("if (chunkSize < 1) {\n" +
+                "throw new IllegalArgumentException(\"The chunk size must be positive, found \" + chunkSize);\n" +
+                "}\n" +
+                chunksName + "(world, time, rows, chunkSize, new long[1], callback);");
+
+        StringBuilder chunks = new StringBuilder();
+        chunks.append("final greycat.Node[] nodes = new greycat.Node[chunkSize];\n")
+                .append("while (true) {\n")
+                .append("int size = 0;\n")
+                .append("while (size < chunkSize && rows.hasNext()) {\n")
+                .append("final ").append(rowType).append(" row = rows.next();\n")
+                .append("final greycat.Node node = this._graph.newTypedNode(world, time, ").append(nodeType).append(".NODE_NAME);\n");
+        for (Property prop : rowProperties(clazz)) {
+            String local = "v_" + prop.name();
+            String owner = formatFqn(ownerOf(clazz, prop)) + "." + prop.name().toUpperCase();
+            chunks.append("final ").append(typeToClassName(prop.type())).append(" ").append(local)
+                    .append(" = row.").append(toCamelCase("get " + prop.name())).append("();\n")
+                    .append("if (").append(local).append(" != null) {\n")
+                    .append("node.setAt(").append(owner).append("_H, ").append(owner).append("_TYPE, ")
+                    .append(local).append(enumOf(prop) != null ? ".ordinal()" : "").append(");\n")
+                    .append("}\n");
+        }
+        chunks.append("nodes[size++] = node;\n")
+                .append("}\n")
+                .append("if (size == 0) {\n")
+                .append("callback.on(done[0]);\n")
+                .append("return;\n")
+                .append("}\n")
+                .append("done[0] += size;\n")
+                .append("//0 while the loop waits, 1 when the chunk completed in place, 2 when the loop gave up waiting\n")
+                .append("final java.util.concurrent.atomic.AtomicInteger state = new java.util.concurrent.atomic.AtomicInteger();\n")
+                .append(flushName).append("(world, time, nodes, size, new greycat.Callback<Boolean>() {\n")
+                .append("@Override\n")
+                .append("public void on(Boolean result) {\n")
+                .append("if (!state.compareAndSet(0, 1)) {\n")
+                .append(chunksName).append("(world, time, rows, chunkSize, done, callback);\n")
+                .append("}\n")
+                .append("}\n")
+                .append("});\n")
+                .append("if (state.compareAndSet(0, 2)) {\n")
+                .append("return;\n")
+                .append("}\n")
+                .append("}");
+
+        MethodSource<JavaClassSource> chunksMethod = modelClass.addMethod().setName(chunksName);
+        chunksMethod.setVisibility(Visibility.PRIVATE);
+        chunksMethod.setReturnTypeVoid();
+        chunksMethod.addParameter("long", "world").setFinal(true);
+        chunksMethod.addParameter("long", "time").setFinal(true);
+        chunksMethod.addParameter("java.util.Iterator<? extends " + rowType + ">", "rows").setFinal(true);
+        chunksMethod.addParameter("int", "chunkSize").setFinal(true);
+        chunksMethod.addParameter("long[]", "done").setFinal(true);
+        chunksMethod.addParameter("greycat.Callback<Long>", "callback").setFinal(true);
+        chunksMethod.setBody(chunks.toString());
+
+        //the indexes nodes of the class belong to, including those of its ancestors
+        List<Index> indexes = new ArrayList<Index>();
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Index) {
+                Class current = clazz;
+                while (current != null && current != ((Index) classifier).type()) {
+                    current = current.parent();
+                }
+                if (current != null) {
+                    indexes.add((Index) classifier);
+                }
+            }
+        }
+        StringBuilder flush = new StringBuilder();
+        String complete = "for (int i = 0; i < size; i++) {\n" +
+                "nodes[i].free();\n" +
+                "nodes[i] = null;\n" +
+                "}\n" +
+                "save(callback);\n";
+        if (indexes.isEmpty()) {
+            flush.append(complete);
+        } else {
+            flush.append("final greycat.DeferCounter counter = this._graph.newCounter(").append(indexes.size()).append(");\n");
+            for (Index index : indexes) {
+                String indexType = formatFqn(index.type());
+                Property[] keys = index.properties();
+                StringBuilder names = new StringBuilder();
+                StringBuilder anySet = new StringBuilder();
+                for (int i = 0; i < keys.length; i++) {
+                    names.append(i > 0 ? ", " : "").append(indexType).append(".").append(keys[i].name().toUpperCase());
+                    anySet.append(i > 0 ? " || " : "").append("nodes[i].getAt(").append(indexType).append(".")
+                            .append(keys[i].name().toUpperCase()).append("_H) != null");
+                }
+                //as with the setters, only the nodes with an indexed attribute set are indexed
+                String add = index.ordered()
+                        ? name + "OrderedIndex.update(indexNode, nodes[i].id(), nodes[i].getAt(" + indexType + "." + keys[0].name().toUpperCase() + "_H));\n"
+                        : "indexNode.addToIndex(nodes[i], " + names + ");\n";
+                flush.append("this._graph.index(world, time, ").append(indexConstant(index)).append(", new greycat.Callback<greycat.NodeIndex>() {\n")
+                        .append("@Override\n")
+                        .append("public void on(greycat.NodeIndex indexNode) {\n")
+                        .append("for (int i = 0; i < size; i++) {\n")
+                        .append("if (").append(anySet).append(") {\n")
+                        .append(add)
+                        .append("}\n")
+                        .append("}\n")
+                        .append("indexNode.free();\n")
+                        .append("counter.count();\n")
+                        .append("}\n")
+                        .append("});\n");
+            }
+            flush.append("counter.then(new greycat.plugin.Job() {\n")
+                    .append("@Override\n")
+                    .append("public void run() {\n")
+                    .append(complete)
+                    .append("}\n")
+                    .append("});");
+        }
+
+        MethodSource<JavaClassSource> flushMethod = modelClass.addMethod().setName(flushName);
+        flushMethod.setVisibility(Visibility.PRIVATE);
+        flushMethod.setReturnTypeVoid();
+        flushMethod.addParameter("long", "world").setFinal(true);
+        flushMethod.addParameter("long", "time").setFinal(true);
+        flushMethod.addParameter("greycat.Node[]", "nodes").setFinal(true);
+        flushMethod.addParameter("int", "size").setFinal(true);
+        flushMethod.addParameter("greycat.Callback<Boolean>", "callback").setFinal(true);
+        flushMethod.setBody(flush.toString());
+    }
+
+    /**
+     * Name of the constant of the model holding the name of an index.
+     */
+    private static String indexConstant(Index index) {
+        return "IDX_" + index.name().toUpperCase();
+    }
+
+    /**
+     * The class declaring a property, among the class and its ancestors.
+     */
+    private static Class ownerOf(Class clazz, Property prop) {
+        Class current = clazz;
+        while (current != null && current.property(prop.name()) != prop) {
+            current = current.parent();
+        }
+        return current == null ? clazz : current;
+    }
+
+    private JavaInterfaceSource generateRow(Class clazz) {
+        final JavaInterfaceSource row = Roaster.create(JavaInterfaceSource.class);
+        if (clazz.pack() != null) {
+            row.setPackage(clazz.pack().toLowerCase());
+        }
+        row.setName(clazz.name() + "Row");
+        for (Property prop : rowProperties(clazz)) {
+            row.addMethod()
+                    .setName(toCamelCase("get " + prop.name()))
+                    .setReturnType(typeToClassName(prop.type()));
+        }
+        return row;
+    }
+
+    /**
+     * Accessors of a relation with at most one target, stored as the id of the target in a long attribute.
+     */
+    private void generateSingleRelationAccessors(JavaClassSource javaClass, Classifier classifier, Relation rel) {
+        if (rel.indexedBy().length > 0) {
+            throw new RuntimeException("Relation " + rel.name() + " has a single target and cannot be indexed");
+        }
+        String resultType = typeToClassName(rel.type());
+        String hash = rel.name().toUpperCase() + "_H";
+        javaClass.addImport(Type.class);
+
+        MethodSource<JavaClassSource> getter = javaClass.addMethod();
+        getter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        getter.setReturnTypeVoid();
+        getter.setName(toCamelCase("get " + rel.name()));
+        getter.addParameter("greycat.Callback<" + resultType + ">", "callback");
+        getter.setBody("final Object id = super.getAt(" + hash + ");\n" +
+                "if (id == null) {\n" +
+                "callback.on(null);\n" +
+                "} else {\n" +
+                "this.graph().lookup(this.world(), this.time(), (Long) id, callback);\n" +
+                "}");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + rel.name()) + "Id")
+                .setReturnType(long.class)
+                .setBody("final Object id = super.getAt(" + hash + ");\n" +
+                        "return id == null ? greycat.Constants.NULL_LONG : (Long) id;");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("has " + rel.name()))
+                .setReturnType(boolean.class)
+                .setBody("return super.getAt(" + hash + ") != null;");
+
+        //a null value unsets the relation
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("set " + rel.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("if (value == null) {\n" +
+                        "super.removeAt(" + hash + ");\n" +
+                        "} else {\n" +
+                        "super.setAt(" + hash + ", Type.LONG, value.id());\n" +
+                        "}\n" +
+                        "return this;")
+                .addParameter(resultType, "value");
+
+        if (blockingAccessors) {
+            javaClass.addMethod()
+                    .setVisibility(Visibility.PUBLIC).setFinal(true)
+                    .setName(toCamelCase("get " + rel.name()))
+                    .setReturnType(resultType)
+                    .setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                            getter.getName() + "(waiter.wrap());\n" +
+                            "return (" + resultType + ") waiter.waitResult();");
+        }
+    }
+
+    /**
+     * Accessors reading the ids of a relation straight from its storage, and resolving only a page of its targets.
+     */
+    private void generateRelationViews(JavaClassSource javaClass, Relation rel, String structType) {
+        String resultType = typeToClassName(rel.type());
+        String relationName = rel.name().substring(0, 1).toUpperCase() + rel.name().substring(1).toLowerCase();
+        String read = "final " + structType + " relation = (" + structType + ") super.getAt(" + rel.name().toUpperCase() + "_H);\n";
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName("size" + relationName)
+                .setReturnType(int.class)
+                .setBody(read + "return relation == null ? 0 : relation.size();");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + rel.name()) + "Ids")
+                .setReturnType("long[]")
+                .setBody(read + "return relation == null ? new long[0] : relation.all();");
+
+        String slice;
+        if (structType.equals("greycat.struct.Relation")) {
+            //plain relations are read by position, without copying the other ids
+            slice = "final long[] ids = new long[(int) Math.min((long) offset + limit, size) - offset];\n" +
+                    "for (int i = 0; i < ids.length; i++) {\n" +
+                    "ids[i] = relation.get(offset + i);\n" +
+                    "}\n";
+        } else {
+            slice = "final long[] ids = java.util.Arrays.copyOfRange(relation.all(), offset, (int) Math.min((long) offset + limit, size));\n";
+        }
+
+        MethodSource<JavaClassSource> page = javaClass.addMethod();
+        page.setVisibility(Visibility.PUBLIC).setFinal(true);
+        page.setReturnTypeVoid();
+        page.setName(toCamelCase("get " + rel.name()) + "Page");
+        page.addParameter("int", "offset");
+        page.addParameter("int", "limit");
+        page.addParameter("greycat.Callback<" + resultType + "[]>", "callback").setFinal(true);
+        page.setBody("if (offset < 0 || limit < 0) {\n" +
+                "throw new IllegalArgumentException(\"offset and limit must be positive\");\n" +
+                "}\n" +
+                read +
+                "final int size = relation == null ? 0 : relation.size();\n" +
+                "if (offset >= size || limit == 0) {\n" +
+                "callback.on(new " + resultType + "[0]);\n" +
+                "return;\n" +
+                "}\n" +
+                slice +
+                "this.graph().lookupAll(this.world(), this.time(), ids, new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] nodes) {\n" +
+                "final " + resultType + "[] result = new " + resultType + "[nodes.length];\n" +
+                "System.arraycopy(nodes, 0, result, 0, nodes.length);\n" +
+                "callback.on(result);\n" +
+                "}\n" +
+                "});");
+    }
+
+    /**
+     * Accessors of a relation stored as a GreyCat indexed relation, whose targets are found by the value of their key
+     * attributes without resolving the others.
+     */
+    private void generateIndexedRelationAccessors(JavaClassSource javaClass, Classifier classifier, Relation rel) {
+        String resultType = typeToClassName(rel.type());
+        String hash = rel.name().toUpperCase() + "_H";
+        javaClass.addImport(Type.class);
+        Classifier target = model.get(rel.type());
+        if (!(target instanceof Class)) {
+            throw new RuntimeException("Relation " + rel.name() + " is indexed, its type must be a class, found: " + rel.type());
+        }
+        String[] keyNames = rel.indexedBy();
+        Property[] keys = new Property[keyNames.length];
+        StringBuilder keyConstants = new StringBuilder();
+        StringBuilder arguments = new StringBuilder();
+        StringBuilder query = new StringBuilder("final greycat.Query query = this.graph().newQuery();\n" +
+                "query.setWorld(this.world());\n" +
+                "query.setTime(this.time());\n");
+        for (int i = 0; i < keyNames.length; i++) {
+            Class current = (Class) target;
+            while (current != null && keys[i] == null) {
+                keys[i] = current.property(keyNames[i]);
+                current = current.parent();
+            }
+            if (!(keys[i] instanceof Attribute)) {
+                throw new RuntimeException("Relation " + rel.name() + " is indexed by " + keyNames[i] + ", which is not an attribute of " + rel.type());
+            }
+            keyConstants.append(", ").append(resultType).append(".").append(keyNames[i].toUpperCase());
+            query.append("query.add(").append(resultType).append(".").append(keyNames[i].toUpperCase())
+                    .append(", ").append(keyValue(keys[i])).append(");\n");
+            arguments.append(i > 0 ? ", " : "").append(keyParameter(keys[i]));
+        }
+
+        MethodSource<JavaClassSource> getter = javaClass.addMethod();
+        getter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        getter.setReturnTypeVoid();
+        getter.setName(toCamelCase("get " + rel.name()));
+        getter.addParameter("greycat.Callback<" + resultType + "[]>", "callback").setFinal(true);
+        getter.setBody("final greycat.struct.RelationIndexed relation = (greycat.struct.RelationIndexed) super.getAt(" + hash + ");\n" +
+                "if (relation == null) {\n" +
+                "callback.on(new " + resultType + "[0]);\n" +
+                "return;\n" +
+                "}\n" +
+                "this.graph().lookupAll(this.world(), this.time(), relation.all(), new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] nodes) {\n" +
+                "final " + resultType + "[] result = new " + resultType + "[nodes.length];\n" +
+                "System.arraycopy(nodes, 0, result, 0, nodes.length);\n" +
+                "callback.on(result);\n" +
+                "}\n" +
+                "});");
+
+        generateRelationViews(javaClass, rel, "greycat.struct.RelationIndexed");
+
+        //the targets are indexed by the value of their keys when they are added, the keys must be set before
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("addTo " + rel.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("((greycat.struct.RelationIndexed) super.getOrCreateAt(" + hash + ", Type.RELATION_INDEXED)).add(value" + keyConstants + ");\n" +
+                        "return this;")
+                .addParameter(resultType, "value");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("removeFrom " + rel.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("final greycat.struct.RelationIndexed relation = (greycat.struct.RelationIndexed) super.getAt(" + hash + ");\n" +
+                        "if (relation != null) {\n" +
+                        "relation.remove(value" + keyConstants + ");\n" +
+                        "}\n" +
+                        "return this;")
+                .addParameter(resultType, "value");
+
+        MethodSource<JavaClassSource> byKey = javaClass.addMethod();
+        byKey.setVisibility(Visibility.PUBLIC).setFinal(true);
+        byKey.setReturnTypeVoid();
+        byKey.setName(toCamelCase("get " + rel.name()) + "By");
+        for (Property key : keys) {
+            byKey.addParameter(typeToClassName(key.type()), keyParameter(key));
+        }
+        byKey.addParameter("greycat.Callback<" + resultType + ">", "callback").setFinal(true);
+        byKey.setBody("final greycat.struct.RelationIndexed relation = (greycat.struct.RelationIndexed) super.getAt(" + hash + ");\n" +
+                "if (relation == null) {\n" +
+                "callback.on(null);\n" +
+                "return;\n" +
+                "}\n" +
+                query +
+                "relation.findByQuery(query, new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] nodes) {\n" +
+                "for (int i = 1; i < nodes.length; i++) {\n" +
+                "nodes[i].free();\n" +
+                "}\n" +
+                "callback.on(nodes.length == 0 ? null : (" + resultType + ") nodes[0]);\n" +
+                "}\n" +
+                "});");
+
+        MethodSource<JavaClassSource> contains = javaClass.addMethod();
+        contains.setVisibility(Visibility.PUBLIC).setFinal(true);
+        contains.setReturnTypeVoid();
+        contains.setName(toCamelCase("contains " + rel.name()));
+        for (Property key : keys) {
+            contains.addParameter(typeToClassName(key.type()), keyParameter(key));
+        }
+        contains.addParameter("greycat.Callback<Boolean>", "callback").setFinal(true);
+        contains.setBody(byKey.getName() + "(" + arguments + ", new greycat.Callback<" + resultType + ">() {\n" +
+                "@Override\n" +
+                "public void on(" + resultType + " found) {\n" +
+                "if (found != null) {\n" +
+                "found.free();\n" +
+                "}\n" +
+                "callback.on(found != null);\n" +
+                "}\n" +
+                "});");
+
+        if (blockingAccessors) {
+            MethodSource<JavaClassSource> blockingByKey = javaClass.addMethod();
+            blockingByKey.setVisibility(Visibility.PUBLIC).setFinal(true);
+            blockingByKey.setReturnType(resultType);
+            blockingByKey.setName(byKey.getName());
+            for (Property key : keys) {
+                blockingByKey.addParameter(typeToClassName(key.type()), keyParameter(key));
+            }
+            blockingByKey.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    byKey.getName() + "(" + arguments + ", waiter.wrap());\n" +
+                    "return (" + resultType + ") waiter.waitResult();");
+
+            MethodSource<JavaClassSource> blockingContains = javaClass.addMethod();
+            blockingContains.setVisibility(Visibility.PUBLIC).setFinal(true);
+            blockingContains.setReturnType(boolean.class);
+            blockingContains.setName(contains.getName());
+            for (Property key : keys) {
+                blockingContains.addParameter(typeToClassName(key.type()), keyParameter(key));
+            }
+            blockingContains.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    contains.getName() + "(" + arguments + ", waiter.wrap());\n" +
+                    "return (Boolean) waiter.waitResult();");
+        }
+    }
+
+    /**
+     * Accessors of an attribute stored in the monitor sub-node of its node. Reading or writing it resolves the
+     * sub-node, which is created by the first write.
+     */
+    private void generateMonitoredAccessors(JavaClassSource javaClass, Classifier classifier, Property prop) {
+        String resultType = typeToClassName(prop.type());
+        String hash = prop.name().toUpperCase() + "_H";
+
+        MethodSource<JavaClassSource> asyncGetter = javaClass.addMethod();
+        asyncGetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        asyncGetter.setReturnTypeVoid();
+        asyncGetter.setName(toCamelCase("get " + prop.name()) + "Async");
+        asyncGetter.addParameter("greycat.Callback<" + resultType + ">", "callback").setFinal(true);
+        asyncGetter.setBody("monitor(false, new greycat.Callback<greycat.Node>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node monitor) {\n" +
+                "if (monitor == null) {\n" +
+                "callback.on(null);\n" +
+                "} else {\n" +
+                "final " + resultType + " value = (" + resultType + ") monitor.getAt(" + hash + ");\n" +
+                "monitor.free();\n" +
+                "callback.on(value);\n" +
+                "}\n" +
+                "}\n" +
+                "});");
+
+        MethodSource<JavaClassSource> futureGetter = javaClass.addMethod();
+        futureGetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        futureGetter.setReturnType("java.util.concurrent.CompletableFuture<" + resultType + ">");
+        futureGetter.setName(toCamelCase("get " + prop.name()) + "Async");
+        futureGetter.setBody("final java.util.concurrent.CompletableFuture<" + resultType + "> future = new java.util.concurrent.CompletableFuture<" + resultType + ">();\n" +
+                asyncGetter.getName() + "(new greycat.Callback<" + resultType + ">() {\n" +
+                "@Override\n" +
+                "public void on(" + resultType + " result) {\n" +
+                "future.complete(result);\n" +
+                "}\n" +
+                "});\n" +
+                "return future;");
+
+        MethodSource<JavaClassSource> asyncSetter = javaClass.addMethod();
+        asyncSetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        asyncSetter.setName(toCamelCase("set " + prop.name()) + "Async");
+        asyncSetter.setReturnTypeVoid();
+        asyncSetter.addParameter(resultType, "value").setFinal(true);
+        asyncSetter.addParameter("greycat.Callback<Boolean>", "callback").setFinal(true);
+        asyncSetter.setBody("monitor(true, new greycat.Callback<greycat.Node>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node monitor) {\n" +
+                "monitor.setAt(" + hash + ", " + prop.name().toUpperCase() + "_TYPE, value);\n" +
+                "monitor.free();\n" +
+                "if (callback != null) {\n" +
+                "callback.on(true);\n" +
+                "}\n" +
+                "}\n" +
+                "});");
+
+        MethodSource<JavaClassSource> futureSetter = javaClass.addMethod();
+        futureSetter.setVisibility(Visibility.PUBLIC).setFinal(true);
+        futureSetter.setName(toCamelCase("set " + prop.name()) + "Async");
+        futureSetter.setReturnType("java.util.concurrent.CompletableFuture<Boolean>");
+        futureSetter.addParameter(resultType, "value");
+        futureSetter.setBody("final java.util.concurrent.CompletableFuture<Boolean> future = new java.util.concurrent.CompletableFuture<Boolean>();\n" +
+                asyncSetter.getName() + "(value, new greycat.Callback<Boolean>() {\n" +
+                "@Override\n" +
+                "public void on(Boolean result) {\n" +
+                "future.complete(result);\n" +
+                "}\n" +
+                "});\n" +
+                "return future;");
+
+        if (blockingAccessors) {
+            MethodSource<JavaClassSource> getter = javaClass.addMethod();
+            getter.setVisibility(Visibility.PUBLIC).setFinal(true);
+            getter.setReturnType(resultType);
+            getter.setName(toCamelCase("get " + prop.name()));
+            getter.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    asyncGetter.getName() + "(waiter.wrap());\n" +
+                    "return (" + resultType + ") waiter.waitResult();");
+
+            MethodSource<JavaClassSource> setter = javaClass.addMethod();
+            setter.setVisibility(Visibility.PUBLIC).setFinal(true);
+            setter.setName(toCamelCase("set " + prop.name()));
+            setter.setReturnType(formatFqn(classifier));
+            setter.addParameter(resultType, "value");
+            setter.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    asyncSetter.getName() + "(value, waiter.wrap());\n" +
+                    "waiter.waitResult();\n" +
+                    "return this;");
+        }
+    }
+
+    /**
+     * History accessors of a plain attribute, returned as parallel arrays in ascending order of time. The history keeps
+     * only the timepoints where the value changes, the series keeps every timepoint of the node holding a value. Both
+     * resolve one view of the node per timepoint, see {@link #walkTimepoints}.
+     */
+    private void generateHistoryAccessors(JavaClassSource javaClass, Property prop, String timePackage) {
+        String boxedType = typeToClassName(prop.type());
+        String valueType = typeToPrimitiveName(prop.type());
+        String extract;
+        if (valueType == null) {
+            valueType = "String";
+            extract = "(String) value";
+        } else {
+            extract = "((" + boxedType + ") value)." + valueType + "Value()";
+        }
+        String seriesType = timePackage + "." + seriesName(valueType);
+
+        MethodSource<JavaClassSource> history = javaClass.addMethod();
+        history.setVisibility(Visibility.PUBLIC).setFinal(true);
+        history.setReturnTypeVoid();
+        history.setName(toCamelCase("get " + prop.name()) + "History");
+        history.addParameter("long", "from");
+        history.addParameter("long", "to");
+        history.addParameter("greycat.Callback<" + seriesType + ">", "callback").setFinal(true);
+        history.getJavaDoc().setFullText("Values of " + prop.name() + " between from and to, one point per change of the value:"
+                + " consecutive timepoints holding the same value are collapsed into the first one.\n"
+                + "The node is resolved once per timepoint in the range, in a single batch.");
+        String collect = "final long[] times = new long[nodes.length];\n" +
+                "final " + valueType + "[] values = new " + valueType + "[nodes.length];\n" +
+                "int size = 0;\n";
+        String append = "times[size] = timepoints[index];\n" +
+                "values[size] = casted;\n" +
+                "size++;\n";
+        String result = "callback.on(new " + seriesType + "(java.util.Arrays.copyOf(times, size), java.util.Arrays.copyOf(values, size)));\n";
+        history.setBody(walkTimepoints(prop, valueType, extract, true, collect, append, result));
+
+        MethodSource<JavaClassSource> series = javaClass.addMethod();
+        series.setVisibility(Visibility.PUBLIC).setFinal(true);
+        series.setReturnTypeVoid();
+        series.setName(toCamelCase("get " + prop.name()) + "Series");
+        series.addParameter("long", "from");
+        series.addParameter("long", "to");
+        series.addParameter("greycat.Callback<" + seriesType + ">", "callback").setFinal(true);
+        series.getJavaDoc().setFullText("Raw values of " + prop.name() + " between from and to: one point per timepoint of the node"
+                + " holding a value, repeated values included, plus the value in effect at from.\n"
+                + "Timepoints are per node, so writes to the other attributes of the node also add points, holding the"
+                + " unchanged value of " + prop.name() + ".\n"
+                + "The node is resolved once per timepoint in the range, in a single batch.");
+        series.setBody(walkTimepoints(prop, valueType, extract, false, collect, append, result));
+
+        if (blockingAccessors) {
+            MethodSource<JavaClassSource> between = javaClass.addMethod();
+            between.setVisibility(Visibility.PUBLIC).setFinal(true);
+            between.setReturnType(seriesType);
+            between.setName(toCamelCase("get " + prop.name()) + "Between");
+            between.addParameter("long", "from");
+            between.addParameter("long", "to");
+            between.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    history.getName() + "(from, to, waiter.wrap());\n" +
+                    "return (" + seriesType + ") waiter.waitResult();");
+
+            MethodSource<JavaClassSource> blockingSeries = javaClass.addMethod();
+            blockingSeries.setVisibility(Visibility.PUBLIC).setFinal(true);
+            blockingSeries.setReturnType(seriesType);
+            blockingSeries.setName(series.getName());
+            blockingSeries.addParameter("long", "from");
+            blockingSeries.addParameter("long", "to");
+            blockingSeries.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    series.getName() + "(from, to, waiter.wrap());\n" +
+                    "return (" + seriesType + ") waiter.waitResult();");
+        }
+
+        if (valueType.equals("double") || valueType.equals("long") || valueType.equals("int")) {
+            generateAggregateAccessors(javaClass, prop, timePackage, valueType, extract);
+        }
+    }
+
+    /**
+     * Aggregation of a numeric attribute per time bucket, computed in a single pass without keeping the values. Unlike
+     * the history, it visits every timepoint, repeated values included, plus the value in effect at from.
+     */
+    private void generateAggregateAccessors(JavaClassSource javaClass, Property prop, String timePackage, String valueType, String extract) {
+        String seriesType = timePackage + ".DoubleSeries";
+
+        MethodSource<JavaClassSource> aggregate = javaClass.addMethod();
+        aggregate.setVisibility(Visibility.PUBLIC).setFinal(true);
+        aggregate.setReturnTypeVoid();
+        aggregate.setName(toCamelCase("aggregate " + prop.name()));
+        aggregate.addParameter("long", "from");
+        aggregate.addParameter("long", "to");
+        aggregate.addParameter("long", "bucket");
+        aggregate.addParameter(timePackage + ".AggFn", "fn");
+        aggregate.addParameter("greycat.Callback<" + seriesType + ">", "callback").setFinal(true);
+        String samples = "Each timepoint of the node between from and to is one sample of " + prop.name() + ", plus the value in effect"
+                + " at from. Timepoints are per node, so those created by writes to the other attributes of the node count too,"
+                + " holding the unchanged value: COUNT is the number of timepoints, not of writes to " + prop.name() + ","
+                + " and AVG is not weighted by time.";
+        aggregate.getJavaDoc().setFullText("Values of " + prop.name() + " between from and to, reduced by fn per bucket of the given duration.\n"
+                + samples);
+        aggregate.setBody("final " + timePackage + ".Aggregator aggregator = new " + timePackage + ".Aggregator(from, bucket, fn);\n" +
+                walkTimepoints(prop, valueType, extract, false,
+                        "",
+                        "aggregator.add(timepoints[index], casted);\n",
+                        "callback.on(aggregator.result());\n"));
+
+        if (blockingAccessors) {
+            MethodSource<JavaClassSource> blocking = javaClass.addMethod();
+            blocking.setVisibility(Visibility.PUBLIC).setFinal(true);
+            blocking.setReturnType(seriesType);
+            blocking.setName(aggregate.getName());
+            blocking.addParameter("long", "from");
+            blocking.addParameter("long", "to");
+            blocking.addParameter("long", "bucket");
+            blocking.addParameter(timePackage + ".AggFn", "fn");
+            blocking.getJavaDoc().setFullText("Blocking version of the aggregation, waits for its result.\n" + samples);
+            blocking.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    aggregate.getName() + "(from, to, bucket, fn, waiter.wrap());\n" +
+                    "return (" + seriesType + ") waiter.waitResult();");
+        }
+    }
+
+    /**
+     * Body resolving the timepoints of the node between from and to in one batch, and visiting them in ascending order
+     * of time. The visitor sees the value as casted, and its timepoint as timepoints[index]. With changesOnly, only
+     * the timepoints where the value of the attribute changes are visited. Otherwise every timepoint holding a value
+     * is, and the node is also resolved at from, so that the value in effect there is visited at from when no
+     * timepoint falls on it.
+     * <p>
+     * This is not a chunk-level read: every timepoint is resolved into a view of the node, as a single lookup would do,
+     * only batched. The time tree and state chunks are internal to the graph, the generated code only reaches the
+     * values through node views, so the walk costs one view per timepoint.
+     */
+    private static String walkTimepoints(Property prop, String valueType, String extract, boolean changesOnly, String init, String visit, String complete) {
+        String changed;
+        if (!changesOnly) {
+            changed = "true";
+        } else if (valueType.equals("String")) {
+            changed = "!found || !casted.equals(previous)";
+        } else {
+            changed = "!found || casted != previous";
+        }
+        String resolved;
+        if (changesOnly) {
+            resolved = "public void on(final long[] timepoints) {\n";
+        } else {
+            resolved = "public void on(final long[] points) {\n" +
+                    "final long[] sorted = java.util.Arrays.copyOf(points, points.length);\n" +
+                    "java.util.Arrays.sort(sorted);\n" +
+                    "final long[] timepoints;\n" +
+                    "if (sorted.length > 0 && sorted[0] == from) {\n" +
+                    "timepoints = sorted;\n" +
+                    "} else {\n" +
+                    "timepoints = new long[sorted.length + 1];\n" +
+                    "timepoints[0] = from;\n" +
+                    "System.arraycopy(sorted, 0, timepoints, 1, sorted.length);\n" +
+                    "}\n";
+        }
+        return "final long world = this.world();\n" +
+                "final long id = this.id();\n" +
+                "final greycat.Graph graph = this.graph();\n" +
+                "this.timepoints(from, to, new greycat.Callback<long[]>() {\n" +
+                "@Override\n" +
+                resolved +
+                "final long[] worlds = new long[timepoints.length];\n" +
+                "final long[] ids = new long[timepoints.length];\n" +
+                "java.util.Arrays.fill(worlds, world);\n" +
+                "java.util.Arrays.fill(ids, id);\n" +
+                "graph.lookupBatch(worlds, timepoints, ids, new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] nodes) {\n" +
+                "final boolean descending = timepoints.length > 1 && timepoints[0] > timepoints[timepoints.length - 1];\n" +
+                init +
+                "boolean found = false;\n" +
+                valueType + " previous = " + (valueType.equals("String") ? "null" : valueType.equals("boolean") ? "false" : "0") + ";\n" +
+                "for (int i = 0; i < nodes.length; i++) {\n" +
+                "final int index = descending ? nodes.length - 1 - i : i;\n" +
+                "if (nodes[index] == null) {\n" +
+                "continue;\n" +
+                "}\n" +
+                "final Object value = nodes[index].getAt(" + prop.name().toUpperCase() + "_H);\n" +
+                "nodes[index].free();\n" +
+                "if (value != null) {\n" +
+                "final " + valueType + " casted = " + extract + ";\n" +
+                "if (" + changed + ") {\n" +
+                visit +
+                "found = true;\n" +
+                "previous = casted;\n" +
+                "}\n" +
+                "}\n" +
+                "}\n" +
+                complete +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});";
+    }
+
+    /**
+     * Values of an attribute over time, as parallel arrays sorted by time.
+     */
+    private static JavaClassSource generateSeries(String pack, String valueType) {
+        final JavaClassSource series = Roaster.create(JavaClassSource.class);
+        series.setPackage(pack);
+        series.setName(seriesName(valueType));
+        series.setFinal(true);
+        series.addField().setName("times").setVisibility(Visibility.PRIVATE).setFinal(true).setType("long[]");
+        series.addField().setName("values").setVisibility(Visibility.PRIVATE).setFinal(true).setType(valueType + "[]");
+
+        MethodSource<JavaClassSource> constructor = series.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC);
+        constructor.addParameter("long[]", "times");
+        constructor.addParameter(valueType + "[]", "values");
+        constructor.setBody("this.times = times;\nthis.values = values;");
+
+        series.addMethod().setName("size").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType(int.class).setBody("return times.length;");
+        series.addMethod().setName("times").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType("long[]").setBody("return times;");
+        series.addMethod().setName("values").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType(valueType + "[]").setBody("return values;");
+        return series;
+    }
+
+    /**
+     * Storage of the timeseries attributes, in three long arrays of their node. The samples are encoded into a bit
+     * stream, cut in blocks of at most BLOCK_SIZE samples whose first sample is written in full. The blocks table
+     * holds the first and last time, the start in the stream and the size of each block, so that ranges skip the
+     * blocks they do not overlap. With the gorilla encoding, times are written as delta-of-delta against the previous
+     * delta, or the period for the second sample of a block, and values as the XOR with the previous value.
+     */
+    private static JavaClassSource generateTimeSeriesCodec(String pack) {
+        final JavaClassSource codec = Roaster.create(JavaClassSource.class);
+        codec.setPackage(pack);
+        codec.setName("TimeSeriesCodec");
+        codec.setFinal(true);
+        codec.addImport(Node.class);
+        codec.addImport(Type.class);
+        codec.addImport("greycat.struct.LongArray");
+
+        String[][] constants = {
+                {"BLOCK_SIZE", "1024"}, {"INITIAL_WORDS", "16"},
+                {"BLOCK_FIELDS", "4"}, {"FIRST_TIME", "0"}, {"LAST_TIME", "1"}, {"START", "2"}, {"COUNT", "3"},
+                {"STATE_SIZE", "4"}, {"BIT_LENGTH", "0"}, {"LAST_DELTA", "1"}, {"LAST_BITS", "2"}, {"WINDOW", "3"}
+        };
+        for (String[] constant : constants) {
+            codec.addField().setName(constant[0]).setVisibility(Visibility.PACKAGE_PRIVATE).setStatic(true).setFinal(true)
+                    .setType(int.class).setLiteralInitializer(constant[1]);
+        }
+        codec.addField().setName("bitsHash").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        codec.addField().setName("blocksHash").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        codec.addField().setName("stateHash").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        codec.addField().setName("compressed").setVisibility(Visibility.PRIVATE).setFinal(true).setType(boolean.class);
+        codec.addField().setName("period").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+
+        MethodSource<JavaClassSource> constructor = codec.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC);
+        constructor.addParameter(String.class, "name");
+        constructor.addParameter(boolean.class, "compressed");
+        constructor.addParameter(long.class, "period");
+        constructor.setBody("this.bitsHash = greycat.utility.HashHelper.hash(name);\n" +
+                "this.blocksHash = greycat.utility.HashHelper.hash(name + \"_blocks\");\n" +
+                "this.stateHash = greycat.utility.HashHelper.hash(name + \"_state\");\n" +
+                "this.compressed = compressed;\n" +
+                "this.period = period;");
+
+        //the leading zeros and the length of the meaningful bits of the last XOR window are packed in one long
+        MethodSource<JavaClassSource> append = codec.addMethod()
+                .setName("append")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnTypeVoid()
+                .setBody("final LongArray blocks = (LongArray) node.getOrCreateAt(blocksHash, Type.LONG_ARRAY);\n" +
+                        "final LongArray bits = (LongArray) node.getOrCreateAt(bitsHash, Type.LONG_ARRAY);\n" +
+                        "final LongArray state = (LongArray) node.getOrCreateAt(stateHash, Type.LONG_ARRAY);\n" +
+                        "if (state.size() == 0) {\n" +
+                        "    state.init(STATE_SIZE);\n" +
+                        "}\n" +
+                        "final int offset = blocks.size() - BLOCK_FIELDS;\n" +
+                        "if (offset >= 0 && time <= blocks.get(offset + LAST_TIME)) {\n" +
+                        "    throw new IllegalArgumentException(\"Samples are appended in ascending order of time, \" + time + \" is not after \" + blocks.get(offset + LAST_TIME));\n" +
+                        "}\n" +
+                        "final long valueBits = Double.doubleToRawLongBits(value);\n" +
+                        "long position = state.get(BIT_LENGTH);\n" +
+                        "if (offset < 0 || blocks.get(offset + COUNT) == BLOCK_SIZE) {\n" +
+                        "    blocks.insertElementAt(blocks.size(), time);\n" +
+                        "    blocks.insertElementAt(blocks.size(), time);\n" +
+                        "    blocks.insertElementAt(blocks.size(), position);\n" +
+                        "    blocks.insertElementAt(blocks.size(), 1);\n" +
+                        "    position = write(bits, position, time, 64);\n" +
+                        "    position = write(bits, position, valueBits, 64);\n" +
+                        "    state.set(LAST_DELTA, period);\n" +
+                        "    state.set(WINDOW, -1);\n" +
+                        "} else {\n" +
+                        "    if (compressed) {\n" +
+                        "        final long delta = time - blocks.get(offset + LAST_TIME);\n" +
+                        "        position = writeDeltaOfDelta(bits, position, delta - state.get(LAST_DELTA));\n" +
+                        "        position = writeXor(bits, state, position, valueBits ^ state.get(LAST_BITS));\n" +
+                        "        state.set(LAST_DELTA, delta);\n" +
+                        "    } else {\n" +
+                        "        position = write(bits, position, time, 64);\n" +
+                        "        position = write(bits, position, valueBits, 64);\n" +
+                        "    }\n" +
+                        "    blocks.set(offset + LAST_TIME, time);\n" +
+                        "    blocks.set(offset + COUNT, blocks.get(offset + COUNT) + 1);\n" +
+                        "}\n" +
+                        "state.set(BIT_LENGTH, position);\n" +
+                        "state.set(LAST_BITS, valueBits);");
+        append.addParameter(Node.class, "node");
+        append.addParameter(long.class, "time");
+        append.addParameter(double.class, "value");
+
+        MethodSource<JavaClassSource> cursor = codec.addMethod()
+                .setName("cursor")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnType("SampleCursor")
+                .setBody("return new SampleCursor((LongArray) node.getAt(bitsHash), (LongArray) node.getAt(blocksHash), compressed, period, from, to);");
+        cursor.addParameter(Node.class, "node");
+        cursor.addParameter(long.class, "from");
+        cursor.addParameter(long.class, "to");
+
+        MethodSource<JavaClassSource> range = codec.addMethod()
+                .setName("range")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnType("DoubleSeries")
+                .setBody("final SampleCursor samples = cursor(node, from, to);\n" +
+                        "long[] times = new long[16];\n" +
+                        "double[] values = new double[16];\n" +
+                        "int size = 0;\n" +
+                        "while (samples.next()) {\n" +
+                        "    if (size == times.length) {\n" +
+                        "        times = java.util.Arrays.copyOf(times, size * 2);\n" +
+                        "        values = java.util.Arrays.copyOf(values, size * 2);\n" +
+                        "    }\n" +
+                        "    times[size] = samples.time();\n" +
+                        "    values[size] = samples.value();\n" +
+                        "    size++;\n" +
+                        "}\n" +
+                        "return new DoubleSeries(java.util.Arrays.copyOf(times, size), java.util.Arrays.copyOf(values, size));");
+        range.addParameter(Node.class, "node");
+        range.addParameter(long.class, "from");
+        range.addParameter(long.class, "to");
+
+        //'0' for a regular sample, then '10', '110' and '1110' for 7, 9 and 12 signed bits, '1111' for a full long
+        MethodSource<JavaClassSource> deltaOfDelta = codec.addMethod()
+                .setName("writeDeltaOfDelta")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnType(long.class)
+                .setBody("if (deltaOfDelta == 0) {\n" +
+                        "    return write(bits, position, 0, 1);\n" +
+                        "}\n" +
+                        "if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {\n" +
+                        "    return write(bits, write(bits, position, 2, 2), deltaOfDelta, 7);\n" +
+                        "}\n" +
+                        "if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {\n" +
+                        "    return write(bits, write(bits, position, 6, 3), deltaOfDelta, 9);\n" +
+                        "}\n" +
+                        "if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {\n" +
+                        "    return write(bits, write(bits, position, 14, 4), deltaOfDelta, 12);\n" +
+                        "}\n" +
+                        "return write(bits, write(bits, position, 15, 4), deltaOfDelta, 64);");
+        deltaOfDelta.addParameter("LongArray", "bits");
+        deltaOfDelta.addParameter(long.class, "position");
+        deltaOfDelta.addParameter(long.class, "deltaOfDelta");
+
+        //'0' for an unchanged value, '10' when the meaningful bits fit in the previous window, '11' for a new window
+        MethodSource<JavaClassSource> xor = codec.addMethod()
+                .setName("writeXor")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnType(long.class)
+                .setBody("if (xor == 0) {\n" +
+                        "    return write(bits, position, 0, 1);\n" +
+                        "}\n" +
+                        "final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);\n" +
+                        "final int trailing = Long.numberOfTrailingZeros(xor);\n" +
+                        "final long window = state.get(WINDOW);\n" +
+                        "if (window >= 0) {\n" +
+                        "    final int previousLeading = (int) (window >>> 8);\n" +
+                        "    final int previousMeaningful = (int) (window & 0xFF);\n" +
+                        "    final int previousTrailing = 64 - previousLeading - previousMeaningful;\n" +
+                        "    if (leading >= previousLeading && trailing >= previousTrailing) {\n" +
+                        "        return write(bits, write(bits, position, 2, 2), xor >>> previousTrailing, previousMeaningful);\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "final int meaningful = 64 - leading - trailing;\n" +
+                        "state.set(WINDOW, ((long) leading << 8) | meaningful);\n" +
+                        "long next = write(bits, position, 3, 2);\n" +
+                        "next = write(bits, next, leading, 5);\n" +
+                        "next = write(bits, next, meaningful - 1, 6);\n" +
+                        "return write(bits, next, xor >>> trailing, meaningful);");
+        xor.addParameter("LongArray", "bits");
+        xor.addParameter("LongArray", "state");
+        xor.addParameter(long.class, "position");
+        xor.addParameter(long.class, "xor");
+
+        //writes the count low bits of value at the given bit position, most significant first
+        MethodSource<JavaClassSource> write = codec.addMethod()
+                .setName("write")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnType(long.class)
+                .setBody("final long masked = count == 64 ? value : value & ((1L << count) - 1);\n" +
+                        "final int needed = (int) ((position + count + 63) >>> 6);\n" +
+                        "if (needed > bits.size()) {\n" +
+                        "    grow(bits, needed);\n" +
+                        "}\n" +
+                        "final int word = (int) (position >>> 6);\n" +
+                        "final int free = 64 - (int) (position & 63);\n" +
+                        "if (count <= free) {\n" +
+                        "    bits.set(word, bits.get(word) | (masked << (free - count)));\n" +
+                        "} else {\n" +
+                        "    final int spill = count - free;\n" +
+                        "    bits.set(word, bits.get(word) | (masked >>> spill));\n" +
+                        "    bits.set(word + 1, bits.get(word + 1) | (masked << (64 - spill)));\n" +
+                        "}\n" +
+                        "return position + count;");
+        write.addParameter("LongArray", "bits");
+        write.addParameter(long.class, "position");
+        write.addParameter(long.class, "value");
+        write.addParameter(int.class, "count");
+
+        //doubles the capacity of the stream, so that appends copy it a logarithmic number of times
+        MethodSource<JavaClassSource> grow = codec.addMethod()
+                .setName("grow")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnTypeVoid()
+                .setBody("final long[] previous = new long[bits.size()];\n" +
+                        "for (int i = 0; i < previous.length; i++) {\n" +
+                        "    previous[i] = bits.get(i);\n" +
+                        "}\n" +
+                        "bits.init(Math.max(needed, Math.max(INITIAL_WORDS, previous.length * 2)));\n" +
+                        "for (int i = 0; i < previous.length; i++) {\n" +
+                        "    bits.set(i, previous[i]);\n" +
+                        "}");
+        grow.addParameter("LongArray", "bits");
+        grow.addParameter(int.class, "needed");
+
+        return codec;
+    }
+
+    /**
+     * Reads the samples of a timeseries attribute in ascending order of time, between from and to included, without
+     * materializing them. It reads the structures of the node in place, so it is only valid until the node is freed.
+     */
+    private static JavaClassSource generateSampleCursor(String pack) {
+        final JavaClassSource cursor = Roaster.create(JavaClassSource.class);
+        cursor.setPackage(pack);
+        cursor.setName("SampleCursor");
+        cursor.setFinal(true);
+        cursor.addImport("greycat.struct.LongArray");
+
+        cursor.addField().setName("bits").setVisibility(Visibility.PRIVATE).setFinal(true).setType("LongArray");
+        cursor.addField().setName("blocks").setVisibility(Visibility.PRIVATE).setFinal(true).setType("LongArray");
+        cursor.addField().setName("compressed").setVisibility(Visibility.PRIVATE).setFinal(true).setType(boolean.class);
+        cursor.addField().setName("period").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        cursor.addField().setName("from").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        cursor.addField().setName("to").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        cursor.addField().setName("blockCount").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        cursor.addField().setName("block").setVisibility(Visibility.PRIVATE).setType(int.class);
+        cursor.addField().setName("remaining").setVisibility(Visibility.PRIVATE).setType(int.class);
+        cursor.addField().setName("first").setVisibility(Visibility.PRIVATE).setType(boolean.class);
+        cursor.addField().setName("position").setVisibility(Visibility.PRIVATE).setType(long.class);
+        cursor.addField().setName("time").setVisibility(Visibility.PRIVATE).setType(long.class);
+        cursor.addField().setName("delta").setVisibility(Visibility.PRIVATE).setType(long.class);
+        cursor.addField().setName("valueBits").setVisibility(Visibility.PRIVATE).setType(long.class);
+        cursor.addField().setName("leading").setVisibility(Visibility.PRIVATE).setType(int.class);
+        cursor.addField().setName("trailing").setVisibility(Visibility.PRIVATE).setType(int.class);
+
+        //starts at the first block whose last time is not before from
+        MethodSource<JavaClassSource> constructor = cursor.addMethod().setConstructor(true).setVisibility(Visibility.PACKAGE_PRIVATE);
+        constructor.addParameter("LongArray", "bits");
+        constructor.addParameter("LongArray", "blocks");
+        constructor.addParameter(boolean.class, "compressed");
+        constructor.addParameter(long.class, "period");
+        constructor.addParameter(long.class, "from");
+        constructor.addParameter(long.class, "to");
+        constructor.setBody("this.bits = bits;\n" +
+                "this.blocks = blocks;\n" +
+                "this.compressed = compressed;\n" +
+                "this.period = period;\n" +
+                "this.from = from;\n" +
+                "this.to = to;\n" +
+                "this.blockCount = (bits == null || blocks == null) ? 0 : blocks.size() / TimeSeriesCodec.BLOCK_FIELDS;\n" +
+                "int low = 0;\n" +
+                "int high = blockCount;\n" +
+                "while (low < high) {\n" +
+                "    final int middle = (low + high) >>> 1;\n" +
+                "    if (blocks.get(middle * TimeSeriesCodec.BLOCK_FIELDS + TimeSeriesCodec.LAST_TIME) < from) {\n" +
+                "        low = middle + 1;\n" +
+                "    } else {\n" +
+                "        high = middle;\n" +
+                "    }\n" +
+                "}\n" +
+                "this.block = low;");
+
+        cursor.addMethod()
+                .setName("next")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnType(boolean.class)
+                .setBody("while (true) {\n" +
+                        "    if (remaining == 0) {\n" +
+                        "        if (block >= blockCount || blocks.get(block * TimeSeriesCodec.BLOCK_FIELDS + TimeSeriesCodec.FIRST_TIME) > to) {\n" +
+                        "            return false;\n" +
+                        "        }\n" +
+                        "        position = blocks.get(block * TimeSeriesCodec.BLOCK_FIELDS + TimeSeriesCodec.START);\n" +
+                        "        remaining = (int) blocks.get(block * TimeSeriesCodec.BLOCK_FIELDS + TimeSeriesCodec.COUNT);\n" +
+                        "        first = true;\n" +
+                        "        block++;\n" +
+                        "    }\n" +
+                        "    decode();\n" +
+                        "    remaining--;\n" +
+                        "    if (time > to) {\n" +
+                        "        remaining = 0;\n" +
+                        "        block = blockCount;\n" +
+                        "        return false;\n" +
+                        "    }\n" +
+                        "    if (time >= from) {\n" +
+                        "        return true;\n" +
+                        "    }\n" +
+                        "}");
+
+        cursor.addMethod().setName("time").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType(long.class).setBody("return time;");
+        cursor.addMethod().setName("value").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType(double.class).setBody("return Double.longBitsToDouble(valueBits);");
+
+        cursor.addMethod()
+                .setName("decode")
+                .setVisibility(Visibility.PRIVATE)
+                .setReturnTypeVoid()
+                .setBody("if (first || !compressed) {\n" +
+                        "    time = read(64);\n" +
+                        "    valueBits = read(64);\n" +
+                        "    delta = period;\n" +
+                        "    leading = -1;\n" +
+                        "    first = false;\n" +
+                        "    return;\n" +
+                        "}\n" +
+                        "int prefix = 0;\n" +
+                        "while (prefix < 4 && read(1) == 1) {\n" +
+                        "    prefix++;\n" +
+                        "}\n" +
+                        "if (prefix > 0) {\n" +
+                        "    final int size = prefix == 1 ? 7 : prefix == 2 ? 9 : prefix == 3 ? 12 : 64;\n" +
+                        "    delta += (read(size) << (64 - size)) >> (64 - size);\n" +
+                        "}\n" +
+                        "time += delta;\n" +
+                        "if (read(1) == 0) {\n" +
+                        "    return;\n" +
+                        "}\n" +
+                        "if (read(1) == 1) {\n" +
+                        "    leading = (int) read(5);\n" +
+                        "    final int meaningful = (int) read(6) + 1;\n" +
+                        "    trailing = 64 - leading - meaningful;\n" +
+                        "}\n" +
+                        "valueBits ^= read(64 - leading - trailing) << trailing;");
+
+        //reads count bits at the current position, most significant first
+        cursor.addMethod()
+                .setName("read")
+                .setVisibility(Visibility.PRIVATE)
+                .setReturnType(long.class)
+                .setBody("final int word = (int) (position >>> 6);\n" +
+                        "final int free = 64 - (int) (position & 63);\n" +
+                        "long result;\n" +
+                        "if (count <= free) {\n" +
+                        "    result = bits.get(word) >>> (free - count);\n" +
+                        "} else {\n" +
+                        "    final int spill = count - free;\n" +
+                        "    result = (bits.get(word) << spill) | (bits.get(word + 1) >>> (64 - spill));\n" +
+                        "}\n" +
+                        "position += count;\n" +
+                        "return count == 64 ? result : result & ((1L << count) - 1);")
+                .addParameter(int.class, "count");
+
+        return cursor;
+    }
+
+    private static JavaInterfaceSource generateLearningSink(String pack) {
+        final JavaInterfaceSource sink = Roaster.create(JavaInterfaceSource.class);
+        sink.setPackage(pack);
+        sink.setName("LearningSink");
+        MethodSource<JavaInterfaceSource> learn = sink.addMethod().setName("learn").setReturnTypeVoid();
+        learn.addParameter("long[]", "times");
+        learn.addParameter("double[]", "values");
+        learn.addParameter("greycat.Callback<Boolean>", "callback");
+        return sink;
+    }
+
+    /**
+     * Collects samples, in ascending order of time, and hands them to its sink as one batch once it holds capacity
+     * samples or its oldest sample was added maxAge milliseconds ago. The age is checked when a sample is added, so
+     * a buffer that stops receiving samples has to be flushed explicitly. A maxAge of 0 or less only flushes by size.
+     */
+    private static JavaClassSource generateLearningBuffer(String pack) {
+        final JavaClassSource buffer = Roaster.create(JavaClassSource.class);
+        buffer.setPackage(pack);
+        buffer.setName("LearningBuffer");
+        buffer.setFinal(true);
+        buffer.addField().setName("capacity").setVisibility(Visibility.PRIVATE).setFinal(true).setType(int.class);
+        buffer.addField().setName("maxAge").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        buffer.addField().setName("sink").setVisibility(Visibility.PRIVATE).setFinal(true).setType("LearningSink");
+        buffer.addField().setName("times").setVisibility(Visibility.PRIVATE).setFinal(true).setType("long[]");
+        buffer.addField().setName("values").setVisibility(Visibility.PRIVATE).setFinal(true).setType("double[]");
+        buffer.addField().setName("size").setVisibility(Visibility.PRIVATE).setType(int.class);
+        buffer.addField().setName("oldest").setVisibility(Visibility.PRIVATE).setType(long.class);
+
+        MethodSource<JavaClassSource> constructor = buffer.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC);
+        constructor.addParameter(int.class, "capacity");
+        constructor.addParameter(long.class, "maxAge");
+        constructor.addParameter("LearningSink", "sink");
+        constructor.setBody("if (capacity < 1) {\n" +
+                "    throw new IllegalArgumentException(\"The capacity of a buffer must be positive, found \" + capacity);\n" +
+                "}\n" +
+                "this.capacity = capacity;\n" +
+                "this.maxAge = maxAge;\n" +
+                "this.sink = sink;\n" +
+                "this.times = new long[capacity];\n" +
+                "this.values = new double[capacity];");
+
+        MethodSource<JavaClassSource> add = buffer.addMethod().setName("add").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnTypeVoid()
+                .setBody("if (size == 0 && maxAge > 0) {\n" +
+                        "    oldest = System.currentTimeMillis();\n" +
+                        "}\n" +
+                        "times[size] = time;\n" +
+                        "values[size] = value;\n" +
+                        "size++;\n" +
+                        "if (size == capacity || (maxAge > 0 && System.currentTimeMillis() - oldest >= maxAge)) {\n" +
+                        "    flush(null);\n" +
+                        "}");
+        add.addParameter(long.class, "time");
+        add.addParameter(double.class, "value");
+
+        buffer.addMethod().setName("flush").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnTypeVoid()
+                .setBody("if (size == 0) {\n" +
+                        "    if (callback != null) {\n" +
+                        "        callback.on(true);\n" +
+                        "    }\n" +
+                        "    return;\n" +
+                        "}\n" +
+                        "final long[] batchTimes = java.util.Arrays.copyOf(times, size);\n" +
+                        "final double[] batchValues = java.util.Arrays.copyOf(values, size);\n" +
+                        "size = 0;\n" +
+                        "sink.learn(batchTimes, batchValues, callback);")
+                .addParameter("greycat.Callback<Boolean>", "callback");
+
+        buffer.addMethod().setName("size").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType(int.class).setBody("return size;");
+        return buffer;
+    }
+
+    private static JavaEnumSource generateAggFn(String pack) {
+        final JavaEnumSource aggFn = Roaster.create(JavaEnumSource.class);
+        aggFn.setPackage(pack);
+        aggFn.setName("AggFn");
+        for (String literal : new String[]{"MIN", "MAX", "AVG", "SUM", "COUNT", "LAST"}) {
+            aggFn.addEnumConstant(literal);
+        }
+        return aggFn;
+    }
+
+    /**
+     * Accumulates values, added in ascending order of time, into buckets of a fixed duration starting at from. Only
+     * the running state of the current bucket is kept, closed buckets are reduced to a single value. Buckets without
+     * values are left out of the result.
+     * Each added value is one sample, not weighted by how long it lasts: the aggregate accessors add one per timepoint
+     * of the node, repeated values and timepoints created by writes to other attributes included, plus the value in
+     * effect at from. COUNT is thus the number of samples
+     * and AVG their arithmetic mean, so 10, 10, 10 and 40 in one bucket give a COUNT of 4 and an AVG of 17.5.
+     */
+    private static JavaClassSource generateAggregator(String pack) {
+        final JavaClassSource aggregator = Roaster.create(JavaClassSource.class);
+        aggregator.setPackage(pack);
+        aggregator.setName("Aggregator");
+        aggregator.setFinal(true);
+        aggregator.addField().setName("from").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        aggregator.addField().setName("bucket").setVisibility(Visibility.PRIVATE).setFinal(true).setType(long.class);
+        aggregator.addField().setName("fn").setVisibility(Visibility.PRIVATE).setFinal(true).setType("AggFn");
+        aggregator.addField().setName("times").setVisibility(Visibility.PRIVATE).setType("long[]").setLiteralInitializer("new long[16]");
+        aggregator.addField().setName("values").setVisibility(Visibility.PRIVATE).setType("double[]").setLiteralInitializer("new double[16]");
+        aggregator.addField().setName("size").setVisibility(Visibility.PRIVATE).setType(int.class);
+        aggregator.addField().setName("current").setVisibility(Visibility.PRIVATE).setType(long.class).setLiteralInitializer("-1");
+        aggregator.addField().setName("count").setVisibility(Visibility.PRIVATE).setType(long.class);
+        aggregator.addField().setName("sum").setVisibility(Visibility.PRIVATE).setType(double.class);
+        aggregator.addField().setName("min").setVisibility(Visibility.PRIVATE).setType(double.class);
+        aggregator.addField().setName("max").setVisibility(Visibility.PRIVATE).setType(double.class);
+        aggregator.addField().setName("last").setVisibility(Visibility.PRIVATE).setType(double.class);
+
+        MethodSource<JavaClassSource> constructor = aggregator.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC);
+        constructor.addParameter(long.class, "from");
+        constructor.addParameter(long.class, "bucket");
+        constructor.addParameter("AggFn", "fn");
+        constructor.setBody("if (bucket <= 0) {\n" +
+                "throw new IllegalArgumentException(\"The bucket duration must be positive, found: \" + bucket);\n" +
+                "}\n" +
+                "this.from = from;\n" +
+                "this.bucket = bucket;\n" +
+                "this.fn = fn;");
+
+        MethodSource<JavaClassSource> add = aggregator.addMethod().setName("add").setVisibility(Visibility.PUBLIC).setFinal(true).setReturnTypeVoid();
+        add.addParameter(long.class, "time");
+        add.addParameter(double.class, "value");
+        add.setBody("final long index = (time - from) / bucket;\n" +
+                "if (index != current) {\n" +
+                "close();\n" +
+                "current = index;\n" +
+                "count = 0;\n" +
+                "sum = 0;\n" +
+                "min = Double.POSITIVE_INFINITY;\n" +
+                "max = Double.NEGATIVE_INFINITY;\n" +
+                "}\n" +
+                "count++;\n" +
+                "sum += value;\n" +
+                "if (value < min) {\n" +
+                "min = value;\n" +
+                "}\n" +
+                "if (value > max) {\n" +
+                "max = value;\n" +
+                "}\n" +
+                "last = value;");
+
+        aggregator.addMethod().setName("close").setVisibility(Visibility.PRIVATE).setReturnTypeVoid()
+                .setBody("if (count == 0) {\n" +
+                        "return;\n" +
+                        "}\n" +
+                        "double result;\n" +
+                        "switch (fn) {\n" +
+                        "case MIN:\n" +
+                        "result = min;\n" +
+                        "break;\n" +
+                        "case MAX:\n" +
+                        "result = max;\n" +
+                        "break;\n" +
+                        "case AVG:\n" +
+                        "result = sum / count;\n" +
+                        "break;\n" +
+                        "case SUM:\n" +
+                        "result = sum;\n" +
+                        "break;\n" +
+                        "case COUNT:\n" +
+                        "result = count;\n" +
+                        "break;\n" +
+                        "default:\n" +
+                        "result = last;\n" +
+                        "}\n" +
+                        "if (size == times.length) {\n" +
+                        "times = java.util.Arrays.copyOf(times, size * 2);\n" +
+                        "values = java.util.Arrays.copyOf(values, size * 2);\n" +
+                        "}\n" +
+                        "times[size] = from + current * bucket;\n" +
+                        "values[size] = result;\n" +
+                        "size++;\n" +
+                        "count = 0;");
+
+        aggregator.addMethod().setName("result").setVisibility(Visibility.PUBLIC).setFinal(true).setReturnType("DoubleSeries")
+                .setBody("close();\n" +
+                        "return new DoubleSeries(java.util.Arrays.copyOf(times, size), java.util.Arrays.copyOf(values, size));");
+        return aggregator;
+    }
+
+    /**
+     * Value of a key as added to an index query, enum keys are indexed by their ordinal.
+     */
+    private String keyValue(Property key) {
+        if (enumOf(key) != null) {
+            return "String.valueOf(" + keyParameter(key) + ".ordinal())";
+        }
+        if ("String".equals(key.type())) {
+            return keyParameter(key);
+        }
+        return "String.valueOf(" + keyParameter(key) + ")";
+    }
+
+    /**
+     * The enum an attribute is typed by, null for the other attributes.
+     */
+    private Enum enumOf(Property prop) {
+        if (!(prop instanceof Attribute)) {
+            return null;
+        }
+        Classifier type = model.get(prop.type());
+        if (type instanceof Enum) {
+            return (Enum) type;
+        }
+        return null;
+    }
+
+    /**
+     * Statement marking the node as dirty for each index of the attribute, empty when it is not indexed.
+     */
+    private static String indexMarker(Property prop, String name) {
+        if (prop.indexes().length == 0) {
+            return "";
+        }
+        StringBuilder indexMarker = new StringBuilder();
+        indexMarker.append("if (_indexQueue != null) {\n");
+        for (Index index : prop.indexes()) {
+            indexMarker.append("_indexQueue.mark(").append(name).append("Model.")
+                    .append(indexConstant(index)).append(", this);\n");
+        }
+        indexMarker.append("}\n");
+        return indexMarker.toString();
+    }
+
+    /**
+     * Accessors of an enum attribute, stored as the int ordinal of its literal.
+     */
+    private void generateEnumAccessors(JavaClassSource javaClass, Classifier classifier, Property prop, String indexMarker) {
+        String enumType = formatFqn(enumOf(prop));
+        String hash = prop.name().toUpperCase() + "_H";
+        String typeConstant = prop.name().toUpperCase() + "_TYPE";
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()))
+                .setReturnType(enumType)
+                .setBody("final Object value = super.getAt(" + hash + ");\n" +
+                        "return value == null ? null : " + enumType + ".fromOrdinal((Integer) value);");
+
+        //a null value unsets the attribute
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("set " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("if (value == null) {\n" +
+                        "super.removeAt(" + hash + ");\n" +
+                        "} else {\n" +
+                        "super.setAt(" + hash + ", " + typeConstant + ", value.ordinal());\n" +
+                        "}\n" +
+                        indexMarker +
+                        "return this;")
+                .addParameter(enumType, "value");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("has " + prop.name()))
+                .setReturnType(boolean.class)
+                .setBody("return super.getAt(" + hash + ") != null;");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()) + "Ordinal")
+                .setReturnType(int.class)
+                .setBody("final Object value = super.getAt(" + hash + ");\n" +
+                        "if (value == null) {\n" +
+                        "throw new IllegalStateException(\"Attribute " + prop.name() + " is not set\");\n" +
+                        "}\n" +
+                        "return (Integer) value;");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()) + "Ordinal")
+                .setReturnType(int.class)
+                .setBody("final Object value = super.getAt(" + hash + ");\n" +
+                        "return value == null ? defaultValue : (Integer) value;")
+                .addParameter(int.class, "defaultValue");
+
+        //checked against the literals, so that no unknown ordinal is ever stored
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("set " + prop.name()) + "Ordinal")
+                .setReturnType(formatFqn(classifier))
+                .setBody("super.setAt(" + hash + ", " + typeConstant + ", " + enumType + ".fromOrdinal(ordinal).ordinal());\n" +
+                        indexMarker +
+                        "return this;")
+                .addParameter(int.class, "ordinal");
+    }
+
+    /**
+     * Batch learning of an attribute backed by an algorithm. The model node is resolved once per batch, created at the
+     * first time of the batch when missing, then its views at the times of the samples are looked up in one batch and
+     * each learns its value. Times must be in ascending order. Samples older than an existing model have no view to
+     * learn from, they are skipped and the callback reports false. The buffer collects
+     * single samples into such batches, it resolves the owner again at each flush so that it outlives this view.
+     */
+    private void generateLearningAccessors(JavaClassSource javaClass, Classifier classifier, Property prop, String resolveModel, String timePackage) {
+        MethodSource<JavaClassSource> asyncLearn = javaClass.addMethod();
+        asyncLearn.setVisibility(Visibility.PUBLIC).setFinal(true);
+        asyncLearn.setReturnTypeVoid();
+        asyncLearn.setName(toCamelCase("learn " + prop.name()) + "Async");
+        asyncLearn.addParameter("long[]", "times").setFinal(true);
+        asyncLearn.addParameter("double[]", "values").setFinal(true);
+        asyncLearn.addParameter("greycat.Callback<Boolean>", "callback").setFinal(true);
+        asyncLearn.setBody("if (times.length != values.length) {\n" +
+                "throw new IllegalArgumentException(\"Got \" + times.length + \" times for \" + values.length + \" values\");\n" +
+                "}\n" +
+                "if (times.length == 0) {\n" +
+                "if (callback != null) {\n" +
+                "callback.on(true);\n" +
+                "}\n" +
+                "return;\n" +
+                "}\n" +
+                "for (int i = 1; i < times.length; i++) {\n" +
+                "if (times[i] < times[i - 1]) {\n" +
+                "throw new IllegalArgumentException(\"Times must be in ascending order, found \" + times[i] + \" after \" + times[i - 1]);\n" +
+                "}\n" +
+                "}\n" +
+                "final long world = world();\n" +
+                resolveModel + "(times[0], new greycat.Callback<greycat.ml.RegressionNode>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.ml.RegressionNode model) {\n" +
+                "final long[] worlds = new long[times.length];\n" +
+                "final long[] ids = new long[times.length];\n" +
+                "java.util.Arrays.fill(worlds, world);\n" +
+                "java.util.Arrays.fill(ids, model.id());\n" +
+                "model.free();\n" +
+                "graph().lookupBatch(worlds, times, ids, new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] views) {\n" +
+                "int found = 0;\n" +
+                "for (int i = 0; i < views.length; i++) {\n" +
+                "if (views[i] != null) {\n" +
+                "found++;\n" +
+                "}\n" +
+                "}\n" +
+                "final boolean complete = found == views.length;\n" +
+                "if (found == 0) {\n" +
+                "if (callback != null) {\n" +
+                "callback.on(false);\n" +
+                "}\n" +
+                "return;\n" +
+                "}\n" +
+                "final greycat.DeferCounter counter = graph().newCounter(found);\n" +
+                "for (int i = 0; i < views.length; i++) {\n" +
+                "if (views[i] == null) {\n" +
+                "continue;\n" +
+                "}\n" +
+                "final greycat.ml.RegressionNode view = (greycat.ml.RegressionNode) views[i];\n" +
+                "view.learn(values[i], new greycat.Callback<Boolean>() {\n" +
+                "@Override\n" +
+                "public void on(Boolean result) {\n" +
+                "view.free();\n" +
+                "counter.count();\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "counter.then(new greycat.plugin.Job() {\n" +
+                "@Override\n" +
+                "public void run() {\n" +
+                "if (callback != null) {\n" +
+                "callback.on(complete);\n" +
+                "}\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});");
+
+        MethodSource<JavaClassSource> futureLearn = javaClass.addMethod();
+        futureLearn.setVisibility(Visibility.PUBLIC).setFinal(true);
+        futureLearn.setName(asyncLearn.getName());
+        futureLearn.setReturnType("java.util.concurrent.CompletableFuture<Boolean>");
+        futureLearn.addParameter("long[]", "times");
+        futureLearn.addParameter("double[]", "values");
+        futureLearn.setBody("final java.util.concurrent.CompletableFuture<Boolean> future = new java.util.concurrent.CompletableFuture<Boolean>();\n" +
+                asyncLearn.getName() + "(times, values, new greycat.Callback<Boolean>() {\n" +
+                "@Override\n" +
+                "public void on(Boolean result) {\n" +
+                "future.complete(result);\n" +
+                "}\n" +
+                "});\n" +
+                "return future;");
+
+        if (blockingAccessors) {
+            MethodSource<JavaClassSource> learn = javaClass.addMethod();
+            learn.setVisibility(Visibility.PUBLIC).setFinal(true);
+            learn.setName(toCamelCase("learn " + prop.name()));
+            learn.setReturnType(formatFqn(classifier));
+            learn.addParameter("long[]", "times");
+            learn.addParameter("double[]", "values");
+            learn.setBody("final greycat.DeferCounterSync waiter = this.graph().newSyncCounter(1);\n" +
+                    asyncLearn.getName() + "(times, values, waiter.wrap());\n" +
+                    "waiter.waitResult();\n" +
+                    "return this;");
+        }
+
+        MethodSource<JavaClassSource> buffer = javaClass.addMethod();
+        buffer.setVisibility(Visibility.PUBLIC).setFinal(true);
+        buffer.setName(toCamelCase("buffer " + prop.name()));
+        buffer.setReturnType(timePackage + ".LearningBuffer");
+        buffer.addParameter(int.class, "capacity");
+        buffer.addParameter(long.class, "maxAge");
+        buffer.setBody("final greycat.Graph graph = graph();\n" +
+                "final long world = world();\n" +
+                "final long time = time();\n" +
+                "final long id = id();\n" +
+                "return new " + timePackage + ".LearningBuffer(capacity, maxAge, new " + timePackage + ".LearningSink() {\n" +
+                "@Override\n" +
+                "public void learn(final long[] times, final double[] values, final greycat.Callback<Boolean> callback) {\n" +
+                "graph.lookup(world, time, id, new greycat.Callback<greycat.Node>() {\n" +
+                "@Override\n" +
+                "public void on(final greycat.Node owner) {\n" +
+                "((" + formatFqn(classifier) + ") owner)." + asyncLearn.getName() + "(times, values, new greycat.Callback<Boolean>() {\n" +
+                "@Override\n" +
+                "public void on(Boolean result) {\n" +
+                "owner.free();\n" +
+                "if (callback != null) {\n" +
+                "callback.on(result);\n" +
+                "}\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});");
+    }
+
+    private static boolean isTimeseries(Property prop) {
+        return prop instanceof Attribute && ModelBuilder.TIMESERIES.equals(prop.type());
+    }
+
+    /**
+     * Accessors of a timeseries attribute, whose samples are appended to compressed blocks held by the node rather
+     * than written as one timepoint each. The codec is shared by all the nodes of the class.
+     */
+    private void generateTimeseriesAccessors(JavaClassSource javaClass, Classifier classifier, Property prop, String timePackage) {
+        String codec = prop.name().toUpperCase() + "_CODEC";
+        javaClass.addField()
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setFinal(true)
+                .setName(codec)
+                .setType(timePackage + ".TimeSeriesCodec")
+                .setLiteralInitializer("new " + timePackage + ".TimeSeriesCodec(\"" + prop.name() + "\", "
+                        + "gorilla".equals(prop.parameters().get("encoding")) + ", " + prop.parameters().get("period") + "L)");
+
+        MethodSource<JavaClassSource> append = javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("append " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody(codec + ".append(this, time, value);\n" +
+                        "return this;");
+        append.addParameter(long.class, "time");
+        append.addParameter(double.class, "value");
+
+        MethodSource<JavaClassSource> range = javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()) + "Range")
+                .setReturnType(timePackage + ".DoubleSeries")
+                .setBody("return " + codec + ".range(this, from, to);");
+        range.addParameter(long.class, "from");
+        range.addParameter(long.class, "to");
+
+        MethodSource<JavaClassSource> iterate = javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("iterate " + prop.name()))
+                .setReturnType(timePackage + ".SampleCursor")
+                .setBody("return " + codec + ".cursor(this, from, to);");
+        iterate.addParameter(long.class, "from");
+        iterate.addParameter(long.class, "to");
+    }
+
+    /**
+     * Accessors of a primitive array attribute. The array is a structure of the node: elements are read and written
+     * in place, the whole array is only copied by the bulk setter.
+     */
+    private void generateArrayAccessors(JavaClassSource javaClass, Classifier classifier, Property prop) {
+        String structType = typeToClassName(prop.type());
+        String elementType;
+        switch (nameToType(prop.type())) {
+            case Type.DOUBLE_ARRAY:
+                elementType = "double";
+                break;
+            case Type.LONG_ARRAY:
+                elementType = "long";
+                break;
+            default:
+                elementType = "int";
+        }
+        String hash = prop.name().toUpperCase() + "_H";
+        String typeConstant = prop.name().toUpperCase() + "_TYPE";
+        String resolve = "(" + structType + ") super.getOrCreateAt(" + hash + ", " + typeConstant + ")";
+
+        //the resolved structure, null until the first write, to read only: it may belong to an older timepoint
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()))
+                .setReturnType(structType)
+                .setBody("return (" + structType + ") super.getAt(" + hash + ");");
+
+        //the structure at the time of this node, copied from an older timepoint if needed, to write to
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get or create " + prop.name()))
+                .setReturnType(structType)
+                .setBody("return " + resolve + ";");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase(prop.name() + " size"))
+                .setReturnType(int.class)
+                .setBody("final " + structType + " array = (" + structType + ") super.getAt(" + hash + ");\n" +
+                        "return array == null ? 0 : array.size();");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()) + "At")
+                .setReturnType(elementType)
+                .setBody("final " + structType + " array = (" + structType + ") super.getAt(" + hash + ");\n" +
+                        "if (array == null || index < 0 || index >= array.size()) {\n" +
+                        "throw new IndexOutOfBoundsException(\"Index \" + index + \" is out of " + prop.name() + "\");\n" +
+                        "}\n" +
+                        "return array.get(index);")
+                .addParameter(int.class, "index");
+
+        MethodSource<JavaClassSource> setAt = javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("set " + prop.name()) + "At")
+                .setReturnType(formatFqn(classifier))
+                .setBody("final " + structType + " current = (" + structType + ") super.getAt(" + hash + ");\n" +
+                        "if (current == null || index < 0 || index >= current.size()) {\n" +
+                        "throw new IndexOutOfBoundsException(\"Index \" + index + \" is out of " + prop.name() + "\");\n" +
+                        "}\n" +
+                        "//the resolved structure may belong to an older timepoint, the write goes to a copy at this time\n" +
+                        "final " + structType + " array = " + resolve + ";\n" +
+                        "array.set(index, value);\n" +
+                        "return this;");
+        setAt.addParameter(int.class, "index");
+        setAt.addParameter(elementType, "value");
+
+        //sizes the array, the elements are zeroed
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("init " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("final " + structType + " array = " + resolve + ";\n" +
+                        "array.init(size);\n" +
+                        "return this;")
+                .addParameter(int.class, "size");
+
+        //bulk setter, a null value unsets the attribute
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("set " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("if (values == null) {\n" +
+                        "super.removeAt(" + hash + ");\n" +
+                        "return this;\n" +
+                        "}\n" +
+                        "final " + structType + " array = " + resolve + ";\n" +
+                        "array.init(values.length);\n" +
+                        "for (int i = 0; i < values.length; i++) {\n" +
+                        "array.set(i, values[i]);\n" +
+                        "}\n" +
+                        "return this;")
+                .addParameter(elementType + "[]", "values");
+    }
+
+    /**
+     * Accessors of a long to long map attribute, a structure of the node whose entries are read and written in place.
+     */
+    private void generateMapAccessors(JavaClassSource javaClass, Classifier classifier, Property prop) {
+        String structType = typeToClassName(prop.type());
+        String hash = prop.name().toUpperCase() + "_H";
+        String typeConstant = prop.name().toUpperCase() + "_TYPE";
+        javaClass.addImport(Constants.class);
+
+        //the resolved structure, null until the first write, to read only: it may belong to an older timepoint
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()))
+                .setReturnType(structType)
+                .setBody("return (" + structType + ") super.getAt(" + hash + ");");
+
+        //the structure at the time of this node, copied from an older timepoint if needed, to write to
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get or create " + prop.name()))
+                .setReturnType(structType)
+                .setBody("return (" + structType + ") super.getOrCreateAt(" + hash + ", " + typeConstant + ");");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase(prop.name() + " size"))
+                .setReturnType(int.class)
+                .setBody("final " + structType + " map = (" + structType + ") super.getAt(" + hash + ");\n" +
+                        "return map == null ? 0 : map.size();");
+
+        //Constants.NULL_LONG when the key is absent
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()))
+                .setReturnType(long.class)
+                .setBody("final " + structType + " map = (" + structType + ") super.getAt(" + hash + ");\n" +
+                        "return map == null ? Constants.NULL_LONG : map.get(key);")
+                .addParameter(long.class, "key");
+
+        MethodSource<JavaClassSource> put = javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("put " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("((" + structType + ") super.getOrCreateAt(" + hash + ", " + typeConstant + ")).put(key, value);\n" +
+                        "return this;");
+        put.addParameter(long.class, "key");
+        put.addParameter(long.class, "value");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("remove " + prop.name()))
+                .setReturnType(formatFqn(classifier))
+                .setBody("if (super.getAt(" + hash + ") != null) {\n" +
+                        "//the resolved structure may belong to an older timepoint, the write goes to a copy at this time\n" +
+                        "((" + structType + ") super.getOrCreateAt(" + hash + ", " + typeConstant + ")).remove(key);\n" +
+                        "}\n" +
+                        "return this;")
+                .addParameter(long.class, "key");
+    }
+
+    /**
+     * Name of the parameter of a typed finder holding the key, renamed when it clashes with the other parameters.
+     */
+    private static String keyParameter(Property key) {
+        switch (key.name()) {
+            case "world":
+            case "time":
+            case "callback":
+            case "query":
+            case "relation":
+                return "p_" + key.name();
+            default:
+                return key.name();
+        }
+    }
+
+    private static String seriesName(String valueType) {
+        return valueType.substring(0, 1).toUpperCase() + valueType.substring(1) + "Series";
+    }
+
+    private static String timePackage(String name) {
+        if (name.contains(".")) {
+            return name.substring(0, name.lastIndexOf('.')).toLowerCase() + ".time";
+        }
+        return "time";
+    }
+
+    /**
+     * Algorithm of the node backing the attribute, null for the attributes stored in the node itself.
+     */
+    private static String algorithmOf(Property prop) {
+        //the function of a derived attribute is not a learning algorithm
+        if (prop.derived()) {
+            return null;
+        }
+        if (prop.algorithm() == null && prop.getContinuous()) {
+            return CONTINUOUS_ALGORITHM;
+        }
+        return prop.algorithm();
+    }
+
+    /**
+     * Attributes of the class and its parents that have a plain synchronous setter, i.e. those a row can fill.
+     */
+    private static List<Property> rowProperties(Class clazz) {
+        List<Property> result = new ArrayList<Property>();
+        Class current = clazz;
+        while (current != null) {
+            for (Property prop : current.properties()) {
+                if (prop instanceof Attribute && !prop.derived() && !prop.learned() && algorithmOf(prop) == null && !prop.getMonitorSeparation() && !isStruct(prop.type()) && !isTimeseries(prop)) {
+                    result.add(prop);
+                }
+            }
+            current = current.parent();
+        }
+        return result;
+    }
+
+    /**
+     * Fills {@link #dependents} and numbers the derived attributes, in the order of the model, for {@link #derivedSlots}.
+     */
+    private void derivedDependents() {
+        dependents = new TreeMap<String, Map<String, Set<String>>>();
+        derivedSlots = new TreeMap<String, Integer>();
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Class) {
+                for (Property prop : ((Class) classifier).properties()) {
+                    if (prop instanceof Attribute && prop.derived()) {
+                        derivedSlots.put(classifier.fqn() + "." + prop.name(), derivedSlots.size());
+                        Map<String, Set<String>> ofClass = dependents.get(classifier.fqn());
+                        if (ofClass == null) {
+                            ofClass = new TreeMap<String, Set<String>>();
+                            dependents.put(classifier.fqn(), ofClass);
+                        }
+                        for (Dependency dependency : prop.dependencies()) {
+                            Set<String> derived = ofClass.get(dependency.query());
+                            if (derived == null) {
+                                derived = new TreeSet<String>();
+                                ofClass.put(dependency.query(), derived);
+                            }
+                            derived.add(prop.name());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether a derived attribute of the class declaring the property, or of one of its descendants, depends on it.
+     */
+    private boolean hasDependents(Class owner, Property prop) {
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Class) {
+                Map<String, Set<String>> ofClass = dependents.get(classifier.fqn());
+                if (ofClass != null && ofClass.containsKey(prop.name())) {
+                    for (Class current = (Class) classifier; current != null; current = current.parent()) {
+                        if (current == owner) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Statements run by the setters after a write: the attribute goes through the change hook when derived values
+     * depend on it, so that the class of the node, not the one declaring the setter, drops them, the index marker
+     * otherwise.
+     */
+    private String changeMarker(Class owner, Property prop, String name) {
+        if (hasDependents(owner, prop)) {
+            return "internal_changed(" + prop.name().toUpperCase() + "_H);\n";
+        }
+        return indexMarker(prop, name);
+    }
+
+    /**
+     * Statement of the change hook dropping the memoized values of the derived attributes of the class depending on
+     * the attribute, by their slots in the cache, held by a constant of the class.
+     */
+    private String derivedMarker(JavaClassSource javaClass, Class clazz, String dependency) {
+        String constant = dependency.toUpperCase() + "_DERIVED";
+        StringBuilder slots = new StringBuilder();
+        for (String derived : dependents.get(clazz.fqn()).get(dependency)) {
+            if (slots.length() > 0) {
+                slots.append(", ");
+            }
+            slots.append(derived.toUpperCase()).append("_SLOT");
+        }
+        javaClass.addField()
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setFinal(true)
+                .setName(constant)
+                .setType("int[]")
+                .setLiteralInitializer("new int[]{" + slots + "}");
+        return "if (_derivedCache != null) {\n" +
+                "_derivedCache.changed(this, " + constant + ");\n" +
+                "}\n";
+    }
+
+    private static Property findProperty(Class clazz, String name) {
+        Class current = clazz;
+        while (current != null) {
+            Property found = current.property(name);
+            if (found != null) {
+                return found;
+            }
+            current = current.parent();
+        }
+        return null;
+    }
+
+    /**
+     * Getter of a derived attribute. The value is computed by the function named in the metamodel on the first read
+     * at a world and time, then memoized in the slot of the attribute in the derived cache, a hit is one lookup. It is
+     * dropped when one of the attributes it depends on is written through a setter or the task API, both report to the
+     * change hook, writes made with the plain node API do not and must call the hook themselves. Null values are not
+     * memoized.
+     */
+    private void generateDerivedAccessors(JavaClassSource javaClass, Class clazz, Property prop, String name) {
+        if (prop.algorithm() == null) {
+            throw new RuntimeException("Derived attribute " + prop.name() + " must name its function with using");
+        }
+        if ((nameToType(prop.type()) == -1 && enumOf(prop) == null) || isStruct(prop.type())) {
+            throw new RuntimeException("Derived attribute " + prop.name() + " must be of a primitive or enum type, found: " + prop.type());
+        }
+        for (Dependency dependency : prop.dependencies()) {
+            Property source = findProperty(clazz, dependency.query());
+            if (!(source instanceof Attribute) || source.derived() || source.learned() || algorithmOf(source) != null
+                    || source.getMonitorSeparation() || isStruct(source.type()) || isTimeseries(source)) {
+                throw new RuntimeException("Derived attribute " + prop.name() + " depends on " + dependency.query()
+                        + ", which is not a plain attribute of " + clazz.name());
+            }
+        }
+        String resultType = typeToClassName(prop.type());
+        String slot = prop.name().toUpperCase() + "_SLOT";
+        String function = prop.name().toUpperCase() + "_FUNCTION";
+        String functionType = name + "DerivedFunction<" + resultType + ">";
+
+        javaClass.addField()
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setFinal(true)
+                .setName(slot)
+                .setType(int.class)
+                .setLiteralInitializer(String.valueOf(derivedSlots.get(clazz.fqn() + "." + prop.name())));
+
+        javaClass.addField()
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setFinal(true)
+                .setName(function)
+                .setType(functionType)
+                .setLiteralInitializer("new " + prop.algorithm() + "()");
+
+        javaClass.addMethod()
+                .setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setName(toCamelCase("get " + prop.name()))
+                .setReturnType(resultType)
+                .setBody("if (_derivedCache != null) {\n" +
+                        "final Object cached = _derivedCache.get(this, " + slot + ");\n" +
+                        "if (cached != null) {\n" +
+                        "return (" + resultType + ") cached;\n" +
+                        "}\n" +
+                        "}\n" +
+                        "final " + resultType + " value = " + function + ".compute(this);\n" +
+                        "if (_derivedCache != null && value != null) {\n" +
+                        "_derivedCache.put(this, " + slot + ", value);\n" +
+                        "}\n" +
+                        "return value;");
+    }
+
+    private JavaInterfaceSource generateDerivedFunction(String name) {
+        final JavaInterfaceSource functionInterface = Roaster.create(JavaInterfaceSource.class);
+        if (name.contains(".")) {
+            functionInterface.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            functionInterface.setName(name.substring(name.lastIndexOf('.') + 1) + "DerivedFunction");
+        } else {
+            functionInterface.setName(name + "DerivedFunction");
+        }
+        functionInterface.addTypeVariable().setName("T");
+        //only reads the attributes the derived attribute declares it depends on, or the memoized value goes stale
+        functionInterface.addMethod().setName("compute").setReturnType("T").addParameter(Node.class, "node");
+        return functionInterface;
+    }
+
+    /**
+     * Memoized values of the derived attributes, one slot per derived attribute of the model in an array per node,
+     * each holding the world and time the value was computed at. A value is only served for the same world and time.
+     * The change hooks drop the slots depending on a written attribute, at every world and time. The least recently
+     * used nodes are evicted beyond the capacity.
+     */
+    private JavaClassSource generateDerivedCache(String name) {
+        final JavaClassSource cacheClass = Roaster.create(JavaClassSource.class);
+        if (name.contains(".")) {
+            cacheClass.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            cacheClass.setName(name.substring(name.lastIndexOf('.') + 1) + "DerivedCache");
+        } else {
+            cacheClass.setName(name + "DerivedCache");
+        }
+        cacheClass.addImport(Node.class);
+        cacheClass.addImport("java.util.LinkedHashMap");
+        cacheClass.addImport("java.util.Map");
+
+        cacheClass.addField().setName("DEFAULT_CAPACITY").setVisibility(Visibility.PUBLIC).setStatic(true).setFinal(true)
+                .setType(int.class).setLiteralInitializer("10000");
+        cacheClass.addField().setName("SLOTS").setVisibility(Visibility.PRIVATE).setStatic(true).setFinal(true)
+                .setType(int.class).setLiteralInitializer(String.valueOf(derivedSlots.size()));
+        //node -> slot -> {world, time, value}
+        cacheClass.addField().setName("entries").setVisibility(Visibility.PRIVATE).setFinal(true).setType("Map<Long, Object[]>");
+
+        cacheClass.addMethod()
+                .setConstructor(true)
+                .setVisibility(Visibility.PUBLIC)
+                .setBody("this.entries = new LinkedHashMap<Long, Object[]>(16, 0.75f, true) {\n" +
+                        "    @Override\n" +
+                        "    protected boolean removeEldestEntry(Map.Entry<Long, Object[]> eldest) {\n" +
+                        "        return size() > p_capacity;\n" +
+                        "    }\n" +
+                        "};")
+                .addParameter(int.class, "p_capacity").setFinal(true);
+
+        MethodSource<JavaClassSource> get = cacheClass.addMethod()
+                .setName("get")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnType(Object.class)
+                .setBody("final Object[] slots = entries.get(node.id());\n" +
+                        "if (slots == null) {\n" +
+                        "    return null;\n" +
+                        "}\n" +
+                        "final Object[] entry = (Object[]) slots[slot];\n" +
+                        "if (entry == null || (Long) entry[0] != node.world() || (Long) entry[1] != node.time()) {\n" +
+                        "    return null;\n" +
+                        "}\n" +
+                        "return entry[2];");
+        get.addParameter(Node.class, "node");
+        get.addParameter(int.class, "slot");
+
+        MethodSource<JavaClassSource> put = cacheClass.addMethod()
+                .setName("put")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnTypeVoid()
+                .setBody("Object[] slots = entries.get(node.id());\n" +
+                        "if (slots == null) {\n" +
+                        "    slots = new Object[SLOTS];\n" +
+                        "    entries.put(node.id(), slots);\n" +
+                        "}\n" +
+                        "slots[slot] = new Object[]{node.world(), node.time(), value};");
+        put.addParameter(Node.class, "node");
+        put.addParameter(int.class, "slot");
+        put.addParameter(Object.class, "value");
+
+        MethodSource<JavaClassSource> changed = cacheClass.addMethod()
+                .setName("changed")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnTypeVoid()
+                .setBody("final Object[] slots = entries.get(node.id());\n" +
+                        "if (slots != null) {\n" +
+                        "    for (int i = 0; i < derived.length; i++) {\n" +
+                        "        slots[derived[i]] = null;\n" +
+                        "    }\n" +
+                        "}");
+        changed.addParameter(Node.class, "node");
+        changed.addParameter("int[]", "derived");
+
+        cacheClass.addMethod()
+                .setName("clear")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnTypeVoid()
+                .setBody("entries.clear();");
+
+        return cacheClass;
+    }
+
+    /**
+     * Implemented by the root classes, notified of every attribute written through the task API so that the indexes
+     * and the derived values depending on it stay up to date. Raw writes through the node API bypass it, the generated
+     * javadoc says so.
+     */
+    private static JavaInterfaceSource generateChangeHook(String name) {
+        final JavaInterfaceSource hook = Roaster.create(JavaInterfaceSource.class);
+        if (name.contains(".")) {
+            hook.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            hook.setName(name.substring(name.lastIndexOf('.') + 1) + "ChangeHook");
+        } else {
+            hook.setName(name + "ChangeHook");
+        }
+        hook.getJavaDoc().setFullText("Notified of the attributes written through the generated setters and the task API, to mark"
+                + " the node dirty for the indexes of the attribute and drop the derived values depending on it.\n"
+                + "Writes made with the plain node API, set or setAt, are not seen: callers writing that way must call"
+                + " internal_changed with the hash of each attribute they write.");
+        MethodSource<JavaInterfaceSource> changed = hook.addMethod().setName("internal_changed").setReturnTypeVoid();
+        changed.addParameter(int.class, "hash");
+        return hook;
+    }
+
+    private JavaClassSource generateNodes(String name) {
+        final JavaClassSource nodesClass = Roaster.create(JavaClassSource.class);
+        if (name.contains(".")) {
+            nodesClass.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            nodesClass.setName(name.substring(name.lastIndexOf('.') + 1) + "Nodes");
+        } else {
+            nodesClass.setName(name + "Nodes");
+        }
+        nodesClass.setFinal(true);
+        nodesClass.addTypeVariable().setName("T");
+        nodesClass.getJavaDoc().setFullText("Typed view over the nodes found in an index, the array of the index is wrapped, not copied.");
+        nodesClass.addField().setName("nodes").setVisibility(Visibility.PRIVATE).setFinal(true).setType("greycat.Node[]");
+
+        nodesClass.addMethod().setConstructor(true).setVisibility(Visibility.PUBLIC)
+                .setBody("this.nodes = nodes;")
+                .addParameter("greycat.Node[]", "nodes");
+        nodesClass.addMethod().setName("size").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType("int")
+                .setBody("return nodes.length;");
+        MethodSource<JavaClassSource> get = nodesClass.addMethod().setName("get").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType("T")
+                .setBody("return (T) nodes[i];");
+        get.addParameter("int", "i");
+        get.addAnnotation(SuppressWarnings.class).setStringValue("unchecked");
+        nodesClass.addMethod().setName("nodes").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnType("greycat.Node[]")
+                .setBody("return nodes;");
+        nodesClass.addMethod().setName("free").setVisibility(Visibility.PUBLIC).setFinal(true)
+                .setReturnTypeVoid()
+                .setBody("for (int i = 0; i < nodes.length; i++) {\n" +
+                        "nodes[i].free();\n" +
+                        "}");
+        return nodesClass;
+    }
+
+    private JavaClassSource generateIndexQueue(String name) {
+        final JavaClassSource queueClass = Roaster.create(JavaClassSource.class);
+        if (name.contains(".")) {
+            queueClass.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            queueClass.setName(name.substring(name.lastIndexOf('.') + 1) + "IndexQueue");
+        } else {
+            queueClass.setName(name + "IndexQueue");
+        }
+        queueClass.addImport(Graph.class);
+        queueClass.addImport(Node.class);
+        queueClass.addImport(NodeIndex.class);
+        queueClass.addImport(Callback.class);
+        queueClass.addImport(DeferCounter.class);
+        queueClass.addImport(Job.class);
+        queueClass.addImport("java.util.ArrayList");
+        queueClass.addImport("java.util.HashMap");
+        queueClass.addImport("java.util.HashSet");
+        queueClass.addImport("java.util.LinkedHashSet");
+        queueClass.addImport("java.util.List");
+        queueClass.addImport("java.util.Map");
+        queueClass.addImport("java.util.Set");
+
+        queueClass.addField().setName("graph").setVisibility(Visibility.PRIVATE).setFinal(true).setType(Graph.class);
+        queueClass.addField().setName("attributes").setVisibility(Visibility.PRIVATE).setFinal(true).setType("Map<String, String[]>");
+        queueClass.addField().setName("ordered").setVisibility(Visibility.PRIVATE).setFinal(true).setType("Set<String>");
+        //index -> world -> time -> ids
+        queueClass.addField().setName("pending").setVisibility(Visibility.PRIVATE).setFinal(true).setType("Map<String, Map<Long, Map<Long, Set<Long>>>>");
+
+        StringBuilder constructorBody = new StringBuilder();
+        constructorBody.append("this.graph = p_graph;\n")
+                .append("this.attributes = new HashMap<String, String[]>();\n")
+                .append("this.ordered = new HashSet<String>();\n")
+                .append("this.pending = new HashMap<String, Map<Long, Map<Long, Set<Long>>>>();\n");
+        for (Classifier classifier : model.classifiers()) {
+            if (classifier instanceof Index) {
+                Index index = (Index) classifier;
+                constructorBody.append("attributes.put(").append(name).append("Model.").append(indexConstant(index)).append(", new String[]{");
+                Property[] properties = index.properties();
+                for (int i = 0; i < properties.length; i++) {
+                    if (i > 0) {
+                        constructorBody.append(", ");
+                    }
+                    constructorBody.append(formatFqn(index.type())).append(".").append(properties[i].name().toUpperCase());
+                }
+                constructorBody.append("});\n");
+                if (index.ordered()) {
+                    constructorBody.append("ordered.add(").append(name).append("Model.").append(indexConstant(index)).append(");\n");
+                }
+            }
+        }
+        queueClass.addMethod()
+                .setConstructor(true)
+                .setVisibility(Visibility.PUBLIC)
+                .setBody(constructorBody.toString())
+                .addParameter(Graph.class, "p_graph");
+
+        MethodSource<JavaClassSource> mark = queueClass.addMethod()
+                .setName("mark")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnTypeVoid()
+                .setBody("Map<Long, Map<Long, Set<Long>>> worlds = pending.get(index);\n" +
+                        "if (worlds == null) {\n" +
+                        "    worlds = new HashMap<Long, Map<Long, Set<Long>>>();\n" +
+                        "    pending.put(index, worlds);\n" +
+                        "}\n" +
+                        "Map<Long, Set<Long>> times = worlds.get(node.world());\n" +
+                        "if (times == null) {\n" +
+                        "    times = new HashMap<Long, Set<Long>>();\n" +
+                        "    worlds.put(node.world(), times);\n" +
+                        "}\n" +
+                        "Set<Long> ids = times.get(node.time());\n" +
+                        "if (ids == null) {\n" +
+                        "    ids = new LinkedHashSet<Long>();\n" +
+                        "    times.put(node.time(), ids);\n" +
+                        "}\n" +
+                        "ids.add(node.id());");
+        mark.addParameter(String.class, "index");
+        mark.addParameter(Node.class, "node");
+
+        MethodSource<JavaClassSource> isDirty = queueClass.addMethod()
+                .setName("isDirty")
+                .setVisibility(Visibility.PUBLIC)
+                .setSynchronized(true)
+                .setReturnType(boolean.class)
+                .setBody("for (Map<Long, Map<Long, Set<Long>>> worlds : pending.values()) {\n" +
+                        "    final Map<Long, Set<Long>> times = worlds.get(node.world());\n" +
+                        "    if (times != null) {\n" +
+                        "        final Set<Long> ids = times.get(node.time());\n" +
+                        "        if (ids != null && ids.contains(node.id())) {\n" +
+                        "            return true;\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "return false;");
+        isDirty.addParameter(Node.class, "node");
+
+        MethodSource<JavaClassSource> discard = queueClass.addMethod()
+                .setName("discard")
+                .setVisibility(Visibility.PRIVATE)
+                .setSynchronized(true)
+                .setReturnType(boolean.class)
+                .setBody("final Map<Long, Map<Long, Set<Long>>> worlds = pending.get(index);\n" +
+                        "if (worlds == null) {\n" +
+                        "    return false;\n" +
+                        "}\n" +
+                        "final Map<Long, Set<Long>> times = worlds.get(node.world());\n" +
+                        "if (times == null) {\n" +
+                        "    return false;\n" +
+                        "}\n" +
+                        "final Set<Long> ids = times.get(node.time());\n" +
+                        "if (ids == null || !ids.remove(node.id())) {\n" +
+                        "    return false;\n" +
+                        "}\n" +
+                        "if (ids.isEmpty()) {\n" +
+                        "    times.remove(node.time());\n" +
+                        "    if (times.isEmpty()) {\n" +
+                        "        worlds.remove(node.world());\n" +
+                        "        if (worlds.isEmpty()) {\n" +
+                        "            pending.remove(index);\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "return true;");
+        discard.addParameter(String.class, "index");
+        discard.addParameter(Node.class, "node");
+
+        MethodSource<JavaClassSource> flushNode = queueClass.addMethod()
+                .setName("flush")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnTypeVoid()
+                .setBody("final List<String> indexes = new ArrayList<String>();\n" +
+                        "for (String index : attributes.keySet()) {\n" +
+                        "    if (discard(index, node)) {\n" +
+                        "        indexes.add(index);\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "if (indexes.isEmpty()) {\n" +
+                        "    if (callback != null) {\n" +
+                        "        callback.on(true);\n" +
+                        "    }\n" +
+                        "    return;\n" +
+                        "}\n" +
+                        "final DeferCounter counter = graph.newCounter(indexes.size());\n" +
+                        "for (final String index : indexes) {\n" +
+                        "    graph.index(node.world(), node.time(), index, new Callback<NodeIndex>() {\n" +
+                        "        @Override\n" +
+                        "        public void on(NodeIndex indexNode) {\n" +
+                        "            update(indexNode, index, node);\n" +
+                        "            indexNode.free();\n" +
+                        "            counter.count();\n" +
+                        "        }\n" +
+                        "    });\n" +
+                        "}\n" +
+                        "counter.then(new Job() {\n" +
+                        "    @Override\n" +
+                        "    public void run() {\n" +
+                        "        if (callback != null) {\n" +
+                        "            callback.on(true);\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "});");
+        flushNode.addParameter(Node.class, "node");
+        flushNode.addParameter("Callback<Boolean>", "callback");
+
+        queueClass.addMethod()
+                .setName("flush")
+                .setVisibility(Visibility.PUBLIC)
+                .setReturnTypeVoid()
+                .setBody("final Map<String, Map<Long, Map<Long, Set<Long>>>> snapshot;\n" +
+                        "synchronized (this) {\n" +
+                        "    snapshot = new HashMap<String, Map<Long, Map<Long, Set<Long>>>>(pending);\n" +
+                        "    pending.clear();\n" +
+                        "}\n" +
+                        "int nbGroups = 0;\n" +
+                        "for (Map<Long, Map<Long, Set<Long>>> worlds : snapshot.values()) {\n" +
+                        "    for (Map<Long, Set<Long>> times : worlds.values()) {\n" +
+                        "        nbGroups += times.size();\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "if (nbGroups == 0) {\n" +
+                        "    if (callback != null) {\n" +
+                        "        callback.on(true);\n" +
+                        "    }\n" +
+                        "    return;\n" +
+                        "}\n" +
+                        "final DeferCounter counter = graph.newCounter(nbGroups);\n" +
+                        "for (final Map.Entry<String, Map<Long, Map<Long, Set<Long>>>> byIndex : snapshot.entrySet()) {\n" +
+                        "    final String index = byIndex.getKey();\n" +
+                        "    for (Map.Entry<Long, Map<Long, Set<Long>>> byWorld : byIndex.getValue().entrySet()) {\n" +
+                        "        final long world = byWorld.getKey();\n" +
+                        "        for (Map.Entry<Long, Set<Long>> byTime : byWorld.getValue().entrySet()) {\n" +
+                        "            final long time = byTime.getKey();\n" +
+                        "            final long[] ids = new long[byTime.getValue().size()];\n" +
+                        "            int cursor = 0;\n" +
+                        "            for (Long id : byTime.getValue()) {\n" +
+                        "                ids[cursor++] = id;\n" +
+                        "            }\n" +
+                        "            graph.index(world, time, byIndex.getKey(), new Callback<NodeIndex>() {\n" +
+                        "                @Override\n" +
+                        "                public void on(final NodeIndex indexNode) {\n" +
+                        "                    graph.lookupAll(world, time, ids, new Callback<Node[]>() {\n" +
+                        "                        @Override\n" +
+                        "                        public void on(Node[] nodes) {\n" +
+                        "                            for (int i = 0; i < nodes.length; i++) {\n" +
+                        "                                if (nodes[i] != null) {\n" +
+                        "                                    update(indexNode, index, nodes[i]);\n" +
+                        "                                    nodes[i].free();\n" +
+                        "                                }\n" +
+                        "                            }\n" +
+                        "                            indexNode.free();\n" +
+                        "                            counter.count();\n" +
+                        "                        }\n" +
+                        "                    });\n" +
+                        "                }\n" +
+                        "            });\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "counter.then(new Job() {\n" +
+                        "    @Override\n" +
+                        "    public void run() {\n" +
+                        "        if (callback != null) {\n" +
+                        "            callback.on(true);\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "});")
+                .addParameter("Callback<Boolean>", "callback");
+
+        MethodSource<JavaClassSource> update = queueClass.addMethod()
+                .setName("update")
+                .setVisibility(Visibility.PRIVATE)
+                .setReturnTypeVoid()
+                .setBody("final String[] indexed = attributes.get(index);\n" +
+                        (usesOrdered ? "if (ordered.contains(index)) {\n" +
+                        "    " + name + "OrderedIndex.update(indexNode, node.id(), node.get(indexed[0]));\n" +
+                        "    return;\n" +
+                        "}\n" : "") +
+                        "indexNode.removeFromIndex(node, indexed);\n" +
+                        "indexNode.addToIndex(node, indexed);");
+        update.addParameter(NodeIndex.class, "indexNode");
+        update.addParameter(String.class, "index");
+        update.addParameter(Node.class, "node");
+
+        return queueClass;
+    }
+
+    /**
+     * Storage of the ordered indexes, on their index node: the keys sorted in ascending order, the ids of the nodes
+     * in the same order, and the key of each node id, to find its entry back when the key changes. Keys are stored
+     * as longs, integral keys as they are so that Long keys keep their full precision, Double keys through an order
+     * preserving encoding of their bits. Ranges are answered by binary search, in logarithmic time, but an insertion
+     * or a removal shifts the arrays and is linear in the size of the index, and the first update at a new world or
+     * time copies the arrays of the versioned index node whole. Ordered indexes are thus documented for small or
+     * rarely written sets.
+     */
+    private JavaClassSource generateOrderedIndex(String name) {
+        final JavaClassSource orderedClass = Roaster.create(JavaClassSource.class);
+        if (name.contains(".")) {
+            orderedClass.setPackage(name.substring(0, name.lastIndexOf('.')).toLowerCase());
+            orderedClass.setName(name.substring(name.lastIndexOf('.') + 1) + "OrderedIndex");
+        } else {
+            orderedClass.setName(name + "OrderedIndex");
+        }
+        orderedClass.setFinal(true);
+        orderedClass.addImport(Node.class);
+        orderedClass.addImport(Type.class);
+        orderedClass.addImport("greycat.struct.LongArray");
+        orderedClass.addImport("greycat.struct.LongLongMap");
+
+        orderedClass.addField().setName("KEYS_H").setVisibility(Visibility.PRIVATE).setStatic(true).setFinal(true)
+                .setType(int.class).setLiteralInitializer("greycat.utility.HashHelper.hash(\"_keys\")");
+        orderedClass.addField().setName("IDS_H").setVisibility(Visibility.PRIVATE).setStatic(true).setFinal(true)
+                .setType(int.class).setLiteralInitializer("greycat.utility.HashHelper.hash(\"_ids\")");
+        orderedClass.addField().setName("ENTRIES_H").setVisibility(Visibility.PRIVATE).setStatic(true).setFinal(true)
+                .setType(int.class).setLiteralInitializer("greycat.utility.HashHelper.hash(\"_entries\")");
+
+        orderedClass.addMethod().setConstructor(true).setVisibility(Visibility.PRIVATE).setBody("");
+
+        MethodSource<JavaClassSource> update = orderedClass.addMethod()
+                .setName("update")
+                .setVisibility(Visibility.PUBLIC)
+                .setStatic(true)
+                .setReturnTypeVoid()
+                .setBody("final LongArray keys = (LongArray) indexNode.getOrCreateAt(KEYS_H, Type.LONG_ARRAY);\n" +
+                        "final LongArray ids = (LongArray) indexNode.getOrCreateAt(IDS_H, Type.LONG_ARRAY);\n" +
+                        "final LongLongMap entries = (LongLongMap) indexNode.getOrCreateAt(ENTRIES_H, Type.LONG_TO_LONG_MAP);\n" +
+                        "//NULL_LONG is also a valid key, an absent entry is told apart by not finding the id under it\n" +
+                        "final long previous = entries.get(id);\n" +
+                        "for (int i = lowerBound(keys, previous); i < keys.size() && keys.get(i) == previous; i++) {\n" +
+                        "    if (ids.get(i) == id) {\n" +
+                        "        keys.removeElementbyIndex(i);\n" +
+                        "        ids.removeElementbyIndex(i);\n" +
+                        "        entries.remove(id);\n" +
+                        "        break;\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "if (key != null) {\n" +
+                        "    final long value = key instanceof Double || key instanceof Float ? encode(((Number) key).doubleValue()) : ((Number) key).longValue();\n" +
+                        "    final int position = upperBound(keys, value);\n" +
+                        "    keys.insertElementAt(position, value);\n" +
+                        "    ids.insertElementAt(position, id);\n" +
+                        "    entries.put(id, value);\n" +
+                        "}");
+        update.addParameter(Node.class, "indexNode");
+        update.addParameter(long.class, "id");
+        update.addParameter(Object.class, "key");
+
+        MethodSource<JavaClassSource> range = orderedClass.addMethod()
+                .setName("range")
+                .setVisibility(Visibility.PUBLIC)
+                .setStatic(true)
+                .setReturnType("long[]")
+                .setBody("final LongArray keys = (LongArray) indexNode.getAt(KEYS_H);\n" +
+                        "final LongArray ids = (LongArray) indexNode.getAt(IDS_H);\n" +
+                        "if (keys == null || ids == null) {\n" +
+                        "    return new long[0];\n" +
+                        "}\n" +
+                        "final int from = lowerBound(keys, lo);\n" +
+                        "final int to = upperBound(keys, hi);\n" +
+                        "if (to <= from) {\n" +
+                        "    return new long[0];\n" +
+                        "}\n" +
+                        "final long[] result = new long[to - from];\n" +
+                        "for (int i = from; i < to; i++) {\n" +
+                        "    result[i - from] = ids.get(i);\n" +
+                        "}\n" +
+                        "return result;");
+        range.addParameter(Node.class, "indexNode");
+        range.addParameter(long.class, "lo");
+        range.addParameter(long.class, "hi");
+
+        //maps doubles to longs of the same order: positive doubles keep their bits, negative ones have the others flipped
+        orderedClass.addMethod()
+                .setName("encode")
+                .setVisibility(Visibility.PUBLIC)
+                .setStatic(true)
+                .setReturnType(long.class)
+                .setBody("final long bits = Double.doubleToLongBits(key);\n" +
+                        "return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);")
+                .addParameter(double.class, "key");
+
+        //first position whose key is greater or equal to the given one
+        MethodSource<JavaClassSource> lowerBound = orderedClass.addMethod()
+                .setName("lowerBound")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnType(int.class)
+                .setBody("int low = 0;\n" +
+                        "int high = keys.size();\n" +
+                        "while (low < high) {\n" +
+                        "    final int middle = (low + high) >>> 1;\n" +
+                        "    if (keys.get(middle) < key) {\n" +
+                        "        low = middle + 1;\n" +
+                        "    } else {\n" +
+                        "        high = middle;\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "return low;");
+        lowerBound.addParameter("LongArray", "keys");
+        lowerBound.addParameter(long.class, "key");
+
+        //first position whose key is strictly greater than the given one
+        MethodSource<JavaClassSource> upperBound = orderedClass.addMethod()
+                .setName("upperBound")
+                .setVisibility(Visibility.PRIVATE)
+                .setStatic(true)
+                .setReturnType(int.class)
+                .setBody("int low = 0;\n" +
+                        "int high = keys.size();\n" +
+                        "while (low < high) {\n" +
+                        "    final int middle = (low + high) >>> 1;\n" +
+                        "    if (keys.get(middle) <= key) {\n" +
+                        "        low = middle + 1;\n" +
+                        "    } else {\n" +
+                        "        high = middle;\n" +
+                        "    }\n" +
+                        "}\n" +
+                        "return low;");
+        upperBound.addParameter("LongArray", "keys");
+        upperBound.addParameter(long.class, "key");
+
+        return orderedClass;
+    }
+
+    /**
+     * Finders of an ordered index: by range of its key, by exact key, and all the indexed nodes in key order.
+     */
+    private void generateOrderedFinders(JavaClassSource modelClass, Index index, String name) {
+        Property[] keys = index.properties();
+        if (keys.length != 1 || typeToPrimitiveName(keys[0].type()) == null || keys[0].type().equals("Boolean")) {
+            throw new RuntimeException("Ordered index " + index.name() + " must have a single numeric key");
+        }
+        String resultType = formatFqn(index.type());
+        String indexName = index.name().substring(0, 1).toUpperCase() + index.name().substring(1);
+        String key = keys[0].name().substring(0, 1).toUpperCase() + keys[0].name().substring(1);
+        //Long and Integer keys are looked up as they are, Double ones through their encoding
+        String keyType = typeToPrimitiveName(keys[0].type());
+        boolean encoded = keyType.equals("double");
+        String lo = encoded ? name + "OrderedIndex.encode(lo)" : "lo";
+        String hi = encoded ? name + "OrderedIndex.encode(hi)" : "hi";
+        String exact = encoded ? name + "OrderedIndex.encode(key)" : "key";
+
+        MethodSource<JavaClassSource> rangeFinder = modelClass.addMethod().setName("find" + indexName + "Range");
+        rangeFinder.setVisibility(Visibility.PUBLIC).setFinal(true);
+        rangeFinder.setReturnTypeVoid();
+        rangeFinder.addParameter("long", "world");
+        rangeFinder.addParameter("long", "time");
+        rangeFinder.addParameter(keyType, "lo");
+        rangeFinder.addParameter(keyType, "hi");
+        rangeFinder.addParameter("greycat.Callback<" + resultType + "[]>", "callback").setFinal(true);
+        rangeFinder.setBody(orderedLookup(index, resultType, name, lo, hi));
+
+        MethodSource<JavaClassSource> keyFinder = modelClass.addMethod().setName("find" + indexName + "By" + key);
+        keyFinder.setVisibility(Visibility.PUBLIC).setFinal(true);
+        keyFinder.setReturnTypeVoid();
+        keyFinder.addParameter("long", "world");
+        keyFinder.addParameter("long", "time");
+        keyFinder.addParameter(keyType, "key");
+        keyFinder.addParameter("greycat.Callback<" + resultType + "[]>", "callback").setFinal(true);
+        keyFinder.setBody(orderedLookup(index, resultType, name, exact, exact));
+
+        MethodSource<JavaClassSource> allFinder = modelClass.addMethod().setName(toCamelCase("findAll " + index.name()));
+        allFinder.setVisibility(Visibility.PUBLIC).setFinal(true);
+        allFinder.setReturnTypeVoid();
+        allFinder.addParameter("long", "world");
+        allFinder.addParameter("long", "time");
+        allFinder.addParameter("greycat.Callback<" + resultType + "[]>", "callback").setFinal(true);
+        allFinder.setBody(orderedLookup(index, resultType, name, "Long.MIN_VALUE", "Long.MAX_VALUE"));
+    }
+
+    private static String orderedLookup(Index index, String resultType, String name, String lo, String hi) {
+        return "final greycat.Graph graph = this._graph;\n" +
+                "graph.indexIfExists(world, time, " + indexConstant(index) + ", new greycat.Callback<greycat.NodeIndex>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.NodeIndex index) {\n" +
+                "if (index == null) {\n" +
+                "callback.on(new " + resultType + "[0]);\n" +
+                "return;\n" +
+                "}\n" +
+                "final long[] ids = " + name + "OrderedIndex.range(index, " + lo + ", " + hi + ");\n" +
+                "index.free();\n" +
+                "graph.lookupAll(world, time, ids, new greycat.Callback<greycat.Node[]>() {\n" +
+                "@Override\n" +
+                "public void on(greycat.Node[] nodes) {\n" +
+                "final " + resultType + "[] result = new " + resultType + "[nodes.length];\n" +
+                "System.arraycopy(nodes, 0, result, 0, nodes.length);\n" +
+                "callback.on(result);\n" +
+                "}\n" +
+                "});\n" +
+                "}\n" +
+                "});";
+    }
+
+    private String toCamelCase(final String init) {
+        if (init == null) {
+            return null;
+        }
+        final StringBuilder ret = new StringBuilder(init.length());
+        boolean isFirst = true;
+        for (final String word : init.split(" ")) {
+            if (isFirst) {
+                ret.append(word);
+                isFirst = false;
+            } else {
+                if (!word.isEmpty()) {
+                    ret.append(word.substring(0, 1).toUpperCase());
+                    ret.append(word.substring(1).toLowerCase());
+                }
+            }
+        }
+        return ret.toString();
+    }
+
+    private static byte nameToType(final String name) {
+        switch (name) {
+            case "Boolean":
+                return Type.BOOL;
+            case "Integer":
+                return Type.INT;
+            case "Long":
+                return Type.LONG;
+            case "String":
+                return Type.STRING;
             case "Double":
                 return Type.DOUBLE;
+            case "DoubleArray":
+                return Type.DOUBLE_ARRAY;
+            case "LongArray":
+                return Type.LONG_ARRAY;
+            case "IntArray":
+                return Type.INT_ARRAY;
+            case "LongToLongMap":
+                return Type.LONG_TO_LONG_MAP;
         }
         return -1;
     }
 
+    /**
+     * Whether the attribute type is one of the native structures of GreyCat, held by the node and edited in place.
+     */
+    private static boolean isStruct(final String name) {
+        switch (nameToType(name)) {
+            case Type.DOUBLE_ARRAY:
+            case Type.LONG_ARRAY:
+            case Type.INT_ARRAY:
+            case Type.LONG_TO_LONG_MAP:
+                return true;
+        }
+        return false;
+    }
+
     private static String typeToClassName(String mwgTypeName) {
         byte mwgType = nameToType(mwgTypeName);
         switch (mwgType) {
@@ -1020,10 +4583,32 @@ public class Generator {
                 return Long.class.getCanonicalName();
             case Type.STRING:
                 return String.class.getCanonicalName();
+            case Type.DOUBLE_ARRAY:
+                return "greycat.struct.DoubleArray";
+            case Type.LONG_ARRAY:
+                return "greycat.struct.LongArray";
+            case Type.INT_ARRAY:
+                return "greycat.struct.IntArray";
+            case Type.LONG_TO_LONG_MAP:
+                return "greycat.struct.LongLongMap";
         }
         return formatTypeString(mwgTypeName);
     }
 
+    private static String typeToPrimitiveName(String mwgTypeName) {
+        switch (nameToType(mwgTypeName)) {
+            case Type.BOOL:
+                return "boolean";
+            case Type.DOUBLE:
+                return "double";
+            case Type.INT:
+                return "int";
+            case Type.LONG:
+                return "long";
+        }
+        return null;
+    }
+
     private static String formatFqn(Classifier classifier) {
         if(classifier.pack() != null) {
             return classifier.pack().toLowerCase() + "." + classifier.name();
@@ -1033,6 +4618,9 @@ public class Generator {
 
     private static String formatTypeString(String type) {
         int lastPoint = type.lastIndexOf(".");
+        if (lastPoint < 0) {
+            return type;
+        }
         return type.substring(0,lastPoint).toLowerCase() + type.substring(lastPoint);
     }
 
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2017 Ludovic Mouline.  All rights reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.greycat.plugins.tmart.model.generator;
+
+import org.jboss.forge.roaster.Roaster;
+import org.jboss.forge.roaster.model.source.EnumConstantSource;
+import org.jboss.forge.roaster.model.source.JavaEnumSource;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EnumOrdinalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Generates the metamodel files, in this order, and returns the constants of the generated a.Status enum.
+     */
+    private List<String> generatedLiterals(String... files) throws Exception {
+        File src = folder.newFolder();
+        for (int i = 0; i < files.length; i++) {
+            Files.write(new File(src, "part" + i + ".mm").toPath(), files[i].getBytes(StandardCharsets.UTF_8));
+        }
+        Generator generator = new Generator();
+        generator.deepScan(src);
+        File target = folder.newFolder();
+        generator.generate("a.Test", target);
+        JavaEnumSource status = Roaster.parse(JavaEnumSource.class, new File(target, "a/Status.java"));
+        List<String> literals = new ArrayList<String>();
+        for (EnumConstantSource constant : status.getEnumConstants()) {
+            literals.add(constant.getName());
+        }
+        return literals;
+    }
+
+    @Test
+    public void declarationOrder() throws Exception {
+        Assert.assertEquals(Arrays.asList("IDLE", "RUNNING", "FAILED"), generatedLiterals(
+                "enum a.Status { IDLE, RUNNING, FAILED }\nclass a.Probe { att status : a.Status }"));
+    }
+
+    @Test
+    public void appendedLiteralKeepsOrdinals() throws Exception {
+        List<String> before = generatedLiterals("enum a.Status { IDLE, RUNNING }\nclass a.Probe { att status : a.Status }");
+        List<String> after = generatedLiterals("enum a.Status { IDLE, RUNNING, FAILED }\nclass a.Probe { att status : a.Status }");
+        Assert.assertEquals(before, after.subList(0, before.size()));
+    }
+
+    @Test
+    public void literalsOfOtherFilesComeAfter() throws Exception {
+        Assert.assertEquals(Arrays.asList("IDLE", "RUNNING", "FAILED"), generatedLiterals(
+                "enum a.Status { IDLE, RUNNING }\nclass a.Probe { att status : a.Status }",
+                "enum a.Status { RUNNING, FAILED }"));
+    }
+
+}
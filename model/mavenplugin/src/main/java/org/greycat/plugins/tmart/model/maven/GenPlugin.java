@@ -18,14 +18,26 @@ package org.greycat.plugins.tmart.model.maven;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.greycat.plugins.tmart.model.generator.Generator;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
 @Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, requiresDependencyResolution = ResolutionScope.COMPILE)
 public class GenPlugin extends AbstractMojo {
@@ -48,19 +60,82 @@ public class GenPlugin extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    /**
+     * Generate blocking accessors on top of every non-blocking one: algorithm-backed and learned attributes,
+     * relations, indexed and single-valued relations, history and aggregate reads.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean blockingAccessors;
+
+    /**
+     * Fingerprint of the inputs of the last generation, used to skip or narrow the next one.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/kmf-fingerprint.properties")
+    private File fingerprint;
+
+    @Component
+    private BuildContext buildContext;
+
+    private static final String GENERATOR_KEY = "@generator";
+
+    private static final String OPTIONS_KEY = "@options";
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        project.addCompileSourceRoot(targetGen.getAbsolutePath());
+        if (buildContext.isIncremental() && !buildContext.hasDelta(src) && targetGen.exists()) {
+            getLog().info("No metamodel change, generation skipped");
+            return;
+        }
+
+        List<File> files = Generator.listFiles(src);
+        Properties current = new Properties();
+        current.setProperty(GENERATOR_KEY, Generator.version());
+        current.setProperty(OPTIONS_KEY, name + ";blockingAccessors=" + blockingAccessors);
+        for (File file : files) {
+            current.setProperty(file.getAbsolutePath(), hash(file));
+        }
+        Properties previous = loadFingerprint();
+        if (previous != null && previous.equals(current)) {
+            getLog().info("Generated sources are up to date");
+            return;
+        }
+
         //Generate Java
         Generator generator = new Generator();
+        generator.setBlockingAccessors(blockingAccessors);
         try {
             generator.deepScan(src);
         } catch (Exception e) {
             e.printStackTrace();
             throw new MojoExecutionException("Problem during the Scan step");
         }
-        generator.generate(name, targetGen);
-        project.addCompileSourceRoot(targetGen.getAbsolutePath());
+        Set<String> affected = null;
+        if (previous != null
+                && current.getProperty(GENERATOR_KEY).equals(previous.getProperty(GENERATOR_KEY))
+                && current.getProperty(OPTIONS_KEY).equals(previous.getProperty(OPTIONS_KEY))
+                && current.keySet().containsAll(previous.keySet())) {
+            List<File> changed = new ArrayList<File>();
+            for (File file : files) {
+                if (!current.getProperty(file.getAbsolutePath()).equals(previous.getProperty(file.getAbsolutePath()))) {
+                    changed.add(file);
+                }
+            }
+            affected = generator.affectedBy(changed);
+        }
+        if (affected == null) {
+            getLog().info("Generating all classifiers");
+        } else {
+            getLog().info("Regenerating " + affected.size() + " affected classifier(s)");
+        }
+        //partial or not, the files of the previous generation that are not generated anymore are deleted
+        try {
+            generator.generate(name, targetGen, affected);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Problem during the Write step", e);
+        }
+        buildContext.refresh(targetGen);
+        storeFingerprint(current);
 
         //todo check if nothing has been broken in the TS/JS generation
 
@@ -172,4 +247,46 @@ public class GenPlugin extends AbstractMojo {
 
     }
 
+    private Properties loadFingerprint() {
+        if (!fingerprint.exists() || !targetGen.exists()) {
+            return null;
+        }
+        Properties result = new Properties();
+        try (InputStream in = new FileInputStream(fingerprint)) {
+            result.load(in);
+        } catch (IOException e) {
+            getLog().warn("Unreadable fingerprint, full generation: " + e.getMessage());
+            return null;
+        }
+        return result;
+    }
+
+    private void storeFingerprint(Properties current) throws MojoExecutionException {
+        fingerprint.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(fingerprint)) {
+            current.store(out, "Generated by the tmart generate goal");
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    private static String hash(File file) throws MojoExecutionException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+            int read = in.read(buffer);
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (Exception e) {
+            throw new MojoExecutionException("Cannot fingerprint " + file.getAbsolutePath(), e);
+        }
+    }
+
 }